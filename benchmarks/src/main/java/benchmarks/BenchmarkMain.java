@@ -0,0 +1,22 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Запуск JMH, по умолчанию с результатами в jmh-result.json: файлы разных
+// коммитов можно сравнивать между собой (например, в jmh.morethan.io).
+// Остальные аргументы передаются JMH как есть, например:
+//   java -jar benchmarks/target/benchmarks.jar ModelBenchmark -p size=100000
+public class BenchmarkMain {
+    public static void main(String[] args) throws Exception {
+        List<String> jmhArgs = new ArrayList<>(Arrays.asList(args));
+        if (!jmhArgs.contains("-rf")) {
+            jmhArgs.addAll(List.of("-rf", "json"));
+            if (!jmhArgs.contains("-rff")) {
+                jmhArgs.addAll(List.of("-rff", "jmh-result.json"));
+            }
+        }
+        org.openjdk.jmh.Main.main(jmhArgs.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,359 @@
+package benchmarks;
+
+import controller.ConcurrentStock;
+import core.ConcurrentInventory;
+import core.Inventory;
+import core.Product;
+import core.StockLevel;
+import model.InventoryModel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Нагрузочная проверка ConcurrentInventory: несколько потоков одновременно
+// двигают остатки, переименовывают, добавляют и удаляют товары, а еще
+// один снимает снимки. Проверяются инварианты, при нарушении - код выхода 1:
+//   java -cp benchmarks/target/benchmarks.jar benchmarks.ConcurrentInventoryStress [секунд]
+//
+// Снимок должен соответствовать одному моменту: у каждого счетного потока
+// свой товар, который он только увеличивает, поэтому значение в снимке не
+// меньше подтвержденного до начала снимка и не больше начатого к его концу.
+// Проверка по нескольким товарам сразу: поток переноса снимает единицы с
+// одного товара своей пары и кладет на другой, поэтому в любой момент сумма
+// пары равна начальной без еще не положенного переноса, и снимок, собранный
+// из состояний разных моментов, эту сумму нарушит.
+// Вторая часть прогоняет ConcurrentStock с однопоточным исполнителем вместо
+// потока JavaFX и сверяет Inventory с ConcurrentInventory после переноса.
+public class ConcurrentInventoryStress {
+    private static final int SHARED_PRODUCTS = 1000;
+    private static final int MOVERS = 4;
+    private static final int COUNTERS = 2;
+    private static final int NAME_POOL = 50;
+    private static final int TRANSFER_PAIRS = 2;
+    private static final int PAIR_QUANTITY = 1000;
+    private static final int MAX_TRANSFER = 5;
+
+    private static final List<String> failures = new ArrayList<>();
+
+    public static void main(String[] args) throws Exception {
+        long seconds = args.length > 0 ? Long.parseLong(args[0]) : 10;
+        stressInventory(seconds);
+        stressConcurrentStock(seconds);
+        if (failures.isEmpty()) {
+            System.out.println("OK");
+        } else {
+            failures.stream().limit(20).forEach(System.out::println);
+            System.out.println("Нарушений: " + failures.size());
+            System.exit(1);
+        }
+    }
+
+    private static void stressInventory(long seconds) throws Exception {
+        ConcurrentInventory stock = new ConcurrentInventory();
+        for (int i = 0; i < SHARED_PRODUCTS; i++) {
+            stock.addProduct("Товар " + i, "Бренд", 10, 100, 100);
+        }
+        int[] counterIds = new int[COUNTERS];
+        for (int i = 0; i < COUNTERS; i++) {
+            counterIds[i] = stock.addProduct("Счетчик " + i, "Бренд", 1, 0, 0).getId();
+        }
+        int[][] pairIds = new int[TRANSFER_PAIRS][2];
+        for (int i = 0; i < TRANSFER_PAIRS; i++) {
+            for (int side = 0; side < 2; side++) {
+                pairIds[i][side] = stock.addProduct("Пара " + i + "-" + side, "Бренд", 1, PAIR_QUANTITY, 0).getId();
+            }
+        }
+        int fixedProducts = SHARED_PRODUCTS + COUNTERS + 2 * TRANSFER_PAIRS;
+        // Сколько увеличений счетный поток начал и сколько подтвердил
+        AtomicLongArray started = new AtomicLongArray(COUNTERS);
+        AtomicLongArray confirmed = new AtomicLongArray(COUNTERS);
+        AtomicLong movements = new AtomicLong();
+        AtomicLong transfers = new AtomicLong();
+        AtomicLong updates = new AtomicLong();
+        AtomicLong addsAndRemoves = new AtomicLong();
+        AtomicLong worstMoveNanos = new AtomicLong();
+        List<Long> snapshotMillis = new ArrayList<>();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < MOVERS; t++) {
+            threads.add(Thread.ofPlatform().name("mover-" + t).start(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long worst = 0;
+                while (System.nanoTime() < deadline) {
+                    int id = 1 + random.nextInt(SHARED_PRODUCTS);
+                    long start = System.nanoTime();
+                    if (stock.adjustQuantity(id, random.nextInt(-30, 31))) {
+                        movements.incrementAndGet();
+                    }
+                    worst = Math.max(worst, System.nanoTime() - start);
+                }
+                worstMoveNanos.accumulateAndGet(worst, Math::max);
+            }));
+        }
+        for (int t = 0; t < COUNTERS; t++) {
+            int slot = t;
+            threads.add(Thread.ofPlatform().name("counter-" + t).start(() -> {
+                while (System.nanoTime() < deadline) {
+                    started.incrementAndGet(slot);
+                    if (!stock.adjustQuantity(counterIds[slot], 1)) {
+                        fail("счетчик " + slot + " не увеличился");
+                    }
+                    confirmed.incrementAndGet(slot);
+                }
+            }));
+        }
+        for (int t = 0; t < TRANSFER_PAIRS; t++) {
+            int[] pair = pairIds[t];
+            threads.add(Thread.ofPlatform().name("transfer-" + t).start(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    int from = random.nextInt(2);
+                    int amount = random.nextInt(1, MAX_TRANSFER + 1);
+                    if (!stock.adjustQuantity(pair[from], -amount)) {
+                        continue;
+                    }
+                    if (!stock.adjustQuantity(pair[1 - from], amount)) {
+                        fail("перенос в пару " + Arrays.toString(pair) + " не прошел");
+                    }
+                    transfers.addAndGet(2);
+                }
+            }));
+        }
+        threads.add(Thread.ofPlatform().name("renamer").start(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (System.nanoTime() < deadline) {
+                Product product = stock.findProductById(1 + random.nextInt(SHARED_PRODUCTS));
+                if (product != null && stock.updateProduct(product.getId(), "Имя " + random.nextInt(NAME_POOL),
+                        product.getBrand(), product.getPrice(), product.getQuantity(), product.getAverageQuantity())) {
+                    updates.incrementAndGet();
+                }
+            }
+        }));
+        threads.add(Thread.ofPlatform().name("add-remove").start(() -> {
+            int next = 0;
+            while (System.nanoTime() < deadline) {
+                Product added = stock.addProduct("Временный " + next++, "Бренд", 1, 5, 5);
+                if (added == null || !stock.removeProduct(added.getId())) {
+                    fail("добавление или удаление не прошло: " + added);
+                }
+                addsAndRemoves.incrementAndGet();
+            }
+        }));
+        threads.add(Thread.ofPlatform().name("snapshots").start(() -> {
+            long[] previous = new long[COUNTERS];
+            while (System.nanoTime() < deadline) {
+                long[] before = new long[COUNTERS];
+                for (int i = 0; i < COUNTERS; i++) {
+                    before[i] = confirmed.get(i);
+                }
+                long start = System.nanoTime();
+                ConcurrentInventory.StockSnapshot snapshot = stock.snapshot();
+                snapshotMillis.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                long[] after = new long[COUNTERS];
+                for (int i = 0; i < COUNTERS; i++) {
+                    after[i] = started.get(i);
+                }
+                checkSnapshot(snapshot, counterIds, before, after, previous);
+                checkPairs(snapshot, pairIds);
+            }
+        }));
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long sum = 0;
+        Set<String> keys = new HashSet<>();
+        for (int id = 1; id <= fixedProducts; id++) {
+            Product product = stock.findProductById(id);
+            if (product == null) {
+                fail("товар " + id + " пропал");
+                continue;
+            }
+            sum += product.getQuantity();
+            if (product.getQuantity() < 0) {
+                fail("отрицательный остаток: " + product);
+            }
+            if (stock.findProductByNameAndBrand(product.getName(), product.getBrand()) != product) {
+                fail("индекс имени не указывает на товар: " + product);
+            }
+            if (!keys.add(product.getName().toLowerCase() + '\n' + product.getBrand().toLowerCase())) {
+                fail("повтор имени и бренда: " + product);
+            }
+        }
+        if (stock.size() != fixedProducts) {
+            fail("лишние товары: " + stock.size());
+        }
+        if (sum != stock.getTotalQuantity()) {
+            fail("общий остаток " + stock.getTotalQuantity() + ", сумма по товарам " + sum);
+        }
+        for (int i = 0; i < COUNTERS; i++) {
+            if (stock.getQuantity(counterIds[i]) != confirmed.get(i)) {
+                fail("счетчик " + i + ": " + stock.getQuantity(counterIds[i]) + " из " + confirmed.get(i));
+            }
+        }
+        for (int[] pair : pairIds) {
+            long pairSum = (long) stock.getQuantity(pair[0]) + stock.getQuantity(pair[1]);
+            if (pairSum != 2L * PAIR_QUANTITY) {
+                fail("сумма пары " + Arrays.toString(pair) + " в конце " + pairSum);
+            }
+        }
+        long expectedMovements = movements.get() + transfers.get() + confirmed.get(0) + confirmed.get(1);
+        if (stock.getMovementOperations() != expectedMovements) {
+            fail("движений " + stock.getMovementOperations() + ", ожидалось " + expectedMovements);
+        }
+        if (stock.getUpdateOperations() != updates.get()) {
+            fail("изменений " + stock.getUpdateOperations() + ", ожидалось " + updates.get());
+        }
+
+        snapshotMillis.sort(null);
+        System.out.printf("ConcurrentInventory: %d движений, %d переименований, %d добавлений и удалений, "
+                        + "%d снимков (медиана %d мс, худший %d мс), худшее движение %.1f мс%n",
+                expectedMovements, updates.get(), addsAndRemoves.get(), snapshotMillis.size(),
+                snapshotMillis.isEmpty() ? 0 : snapshotMillis.get(snapshotMillis.size() / 2),
+                snapshotMillis.isEmpty() ? 0 : snapshotMillis.get(snapshotMillis.size() - 1),
+                worstMoveNanos.get() / 1e6);
+    }
+
+    private static void checkSnapshot(ConcurrentInventory.StockSnapshot snapshot, int[] counterIds,
+                                      long[] before, long[] after, long[] previous) {
+        long sum = 0;
+        int lastId = 0;
+        for (Product product : snapshot.getProducts()) {
+            if (product.getId() <= lastId) {
+                fail("снимок не упорядочен или с повтором id " + product.getId());
+            }
+            lastId = product.getId();
+            if (product.getQuantity() < 0) {
+                fail("отрицательный остаток в снимке: " + product);
+            }
+            if (product.getStockLevel() != StockLevel.of(product.getQuantity(), product.getAverageQuantity())) {
+                fail("уровень запаса не совпадает с остатком: " + product);
+            }
+            sum += product.getQuantity();
+            for (int i = 0; i < counterIds.length; i++) {
+                if (product.getId() != counterIds[i]) {
+                    continue;
+                }
+                long value = product.getQuantity();
+                if (value < before[i] || value > after[i] || value < previous[i]) {
+                    fail("счетчик " + i + " в снимке " + value + ", ожидалось от "
+                            + Math.max(before[i], previous[i]) + " до " + after[i]);
+                }
+                previous[i] = value;
+            }
+        }
+        if (sum != snapshot.getTotalQuantity()) {
+            fail("сумма снимка " + sum + " не равна его итогу " + snapshot.getTotalQuantity());
+        }
+    }
+
+    // Перенос снимает единицы раньше, чем кладет, поэтому сумма пары в снимке
+    // может не дотягивать до начальной на один незаконченный перенос, но не больше
+    private static void checkPairs(ConcurrentInventory.StockSnapshot snapshot, int[][] pairIds) {
+        Map<Integer, Integer> quantities = new HashMap<>();
+        for (Product product : snapshot.getProducts()) {
+            quantities.put(product.getId(), product.getQuantity());
+        }
+        for (int[] pair : pairIds) {
+            Integer first = quantities.get(pair[0]);
+            Integer second = quantities.get(pair[1]);
+            if (first == null || second == null) {
+                fail("товара пары " + Arrays.toString(pair) + " нет в снимке");
+                continue;
+            }
+            long sum = (long) first + second;
+            if (sum > 2L * PAIR_QUANTITY || sum < 2L * PAIR_QUANTITY - MAX_TRANSFER) {
+                fail("сумма пары " + Arrays.toString(pair) + " в снимке " + sum + " (" + first + " + " + second
+                        + "), ожидалось от " + (2 * PAIR_QUANTITY - MAX_TRANSFER) + " до " + 2 * PAIR_QUANTITY);
+            }
+        }
+    }
+
+    // Кассы двигают остатки в ConcurrentInventory, интерфейс в это время
+    // правит и удаляет товары; после переноса склад модели должен совпасть
+    private static void stressConcurrentStock(long seconds) throws Exception {
+        ExecutorService modelThread = Executors.newSingleThreadExecutor();
+        Inventory inventory = Products.inventory(SHARED_PRODUCTS);
+        InventoryModel model = modelThread.submit(() -> InventoryModel.of(inventory)).get();
+        AtomicLong syncs = new AtomicLong();
+        ConcurrentStock concurrentStock = modelThread.submit(
+                () -> ConcurrentStock.start(model, modelThread, syncs::incrementAndGet)).get();
+        ConcurrentInventory stock = concurrentStock.getStock();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < MOVERS; t++) {
+            threads.add(Thread.ofVirtual().start(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    stock.adjustQuantity(1 + random.nextInt(SHARED_PRODUCTS), random.nextInt(-30, 31));
+                }
+            }));
+        }
+        threads.add(Thread.ofPlatform().start(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (System.nanoTime() < deadline) {
+                int id = 2 + random.nextInt(SHARED_PRODUCTS - 1);
+                try {
+                    modelThread.submit(() -> {
+                        Product product = model.findProductById(id);
+                        if (product == null) {
+                            return;
+                        }
+                        if (id % 50 == 0) {
+                            model.removeProduct(product);
+                        } else {
+                            model.updateProduct(product, product.getName(), product.getBrand(),
+                                    product.getPrice() + 1, random.nextInt(100), product.getAverageQuantity());
+                        }
+                    }).get();
+                    Thread.sleep(1);
+                } catch (Exception e) {
+                    fail("правка в потоке модели: " + e);
+                }
+            }
+        }));
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        modelThread.submit(concurrentStock::stop).get();
+        modelThread.shutdown();
+
+        long sum = 0;
+        for (Product product : inventory.getProducts()) {
+            Product current = stock.findProductById(product.getId());
+            if (current == null) {
+                fail("товар модели " + product.getId() + " не найден в ConcurrentInventory");
+                continue;
+            }
+            if (current.getQuantity() != product.getQuantity() || current.getPrice() != product.getPrice()) {
+                fail("модель " + product + ", ConcurrentInventory " + current);
+            }
+            sum += product.getQuantity();
+        }
+        if (inventory.size() != stock.size()) {
+            fail("товаров в модели " + inventory.size() + ", в ConcurrentInventory " + stock.size());
+        }
+        if (sum != stock.getTotalQuantity()) {
+            fail("остаток модели " + sum + ", ConcurrentInventory " + stock.getTotalQuantity());
+        }
+        System.out.printf("ConcurrentStock: %d движений перенесено за %d пачек, товаров %d%n",
+                stock.getMovementOperations(), syncs.get(), inventory.size());
+    }
+
+    private static synchronized void fail(String message) {
+        failures.add(message);
+    }
+}
@@ -0,0 +1,65 @@
+package benchmarks;
+
+import core.CsvParser;
+import core.CsvWriter;
+import core.Product;
+import model.InventoryModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Загрузка CSV (разбор и замена содержимого модели) и сохранение
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class CsvBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private Path directory;
+    private Path source;
+    private Path target;
+    private List<Product> products;
+    private InventoryModel model;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("csv-benchmark");
+        source = directory.resolve("products.csv");
+        target = directory.resolve("saved.csv");
+        Products.writeCsv(source, size);
+        products = Products.generate(size);
+        model = InventoryModel.of();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(source);
+        Files.deleteIfExists(target);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public int load() throws IOException {
+        CsvParser.Result result = new CsvParser().parse(source, () -> false, (rows, bytesDone, totalBytes) -> { });
+        return model.importProducts(result.getProducts(), true).size();
+    }
+
+    @Benchmark
+    public int parse() throws IOException {
+        return new CsvParser().parse(source, () -> false, (rows, bytesDone, totalBytes) -> { }).getProducts().size();
+    }
+
+    @Benchmark
+    public int save() throws IOException {
+        return new CsvWriter().write(target, products, () -> false, (rows, totalRows) -> { });
+    }
+}
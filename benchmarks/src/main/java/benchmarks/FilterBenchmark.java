@@ -0,0 +1,40 @@
+package benchmarks;
+
+import model.FilterModule;
+import model.InventoryModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Фильтр по количеству: применение и снятие, оба раза FilteredList
+// проверяет весь список
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class FilterBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private InventoryModel model;
+    private FilterModule filterModule;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        model = InventoryModel.of(Products.inventory(size));
+        filterModule = new FilterModule(model);
+    }
+
+    @Benchmark
+    public int quantityFilter() {
+        filterModule.setMinQuantity(100);
+        filterModule.setShowZeroQuantity(false);
+        int matches = model.getFilteredProducts().size();
+        filterModule.setMinQuantity(0);
+        filterModule.setShowZeroQuantity(true);
+        return matches;
+    }
+}
@@ -0,0 +1,165 @@
+package benchmarks;
+
+import controller.ConcurrentStock;
+import controller.InventoryServer;
+import core.Inventory;
+import model.InventoryModel;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Нагрузка на HTTP API в обычном и параллельном режиме: запросы уходят с
+// постоянной частотой, не дожидаясь ответов на предыдущие (открытая
+// модель), и задержка считается от запланированного момента отправки,
+// поэтому очередь перед сервером тоже попадает в p99:
+//   java -cp benchmarks/target/benchmarks.jar benchmarks.InventoryServerLoad [запросов/с] [секунд] [товаров]
+//
+// Поток JavaFX заменен однопоточным исполнителем, который раз в кадр
+// занят на FRAME_WORK_MILLIS, как при отрисовке таблицы. Смесь запросов:
+// 60% чтение товара, 20% поиск, 20% приход или расход одной штуки.
+public class InventoryServerLoad {
+    private static final long FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(16);
+    private static final long FRAME_WORK_MILLIS = 4;
+    private static final int SEARCH_LIMIT = 20;
+    private static final String[] SEARCH_TEXTS = {"бренд 1", "товар 42", "ро", "товар 9 бренд", "нет такого"};
+
+    public static void main(String[] args) throws Exception {
+        int rate = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int productCount = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+
+        System.out.printf("%d запросов/с, %d с, товаров %d%n", rate, seconds, productCount);
+        run(false, rate, seconds, productCount);
+        run(true, rate, seconds, productCount);
+    }
+
+    private static void run(boolean concurrent, int rate, int seconds, int productCount) throws Exception {
+        ExecutorService modelThread = Executors.newSingleThreadExecutor();
+        Inventory inventory = Products.inventory(productCount);
+        InventoryModel model = modelThread.submit(() -> InventoryModel.of(inventory)).get();
+        modelThread.submit(inventory::buildSearchIndex).get();
+        ConcurrentStock concurrentStock = concurrent
+                ? modelThread.submit(() -> ConcurrentStock.start(model, modelThread, () -> { })).get()
+                : null;
+        InventoryServer server = new InventoryServer(model, modelThread, () -> { }, concurrentStock);
+        server.start(0);
+
+        Thread frames = Thread.ofPlatform().daemon().start(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                modelThread.execute(() -> busyWait(TimeUnit.MILLISECONDS.toNanos(FRAME_WORK_MILLIS)));
+                LockSupport.parkNanos(FRAME_NANOS);
+            }
+        });
+
+        ExecutorService clientExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        HttpClient client = HttpClient.newBuilder().executor(clientExecutor).build();
+        String base = "http://127.0.0.1:" + server.getPort() + "/api/";
+        try {
+            load(client, base, rate, Math.min(seconds, 2), productCount); // прогрев
+            Result result = load(client, base, rate, seconds, productCount);
+            System.out.printf("%-12s p50 %6.2f мс, p99 %7.2f мс, макс %7.2f мс, ошибок 5xx %d из %d%n",
+                    concurrent ? "параллельный" : "обычный",
+                    result.percentile(0.50), result.percentile(0.99), result.percentile(1.0),
+                    result.serverErrors, result.latencies.length);
+        } finally {
+            frames.interrupt();
+            server.stop();
+            clientExecutor.shutdownNow();
+            if (concurrentStock != null) {
+                modelThread.submit(concurrentStock::stop).get();
+            }
+            modelThread.shutdown();
+            modelThread.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private static Result load(HttpClient client, String base, int rate, int seconds, int productCount)
+            throws InterruptedException {
+        int total = rate * seconds;
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        AtomicLongArray latencies = new AtomicLongArray(total);
+        AtomicLongArray statuses = new AtomicLongArray(total);
+        CountDownLatch done = new CountDownLatch(total);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            long scheduled = start + i * interval;
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            int index = i;
+            client.sendAsync(request(base, random, productCount), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, failure) -> {
+                        latencies.set(index, System.nanoTime() - scheduled);
+                        statuses.set(index, failure == null ? response.statusCode() : 599);
+                        done.countDown();
+                    });
+        }
+        if (!done.await(60, TimeUnit.SECONDS)) {
+            System.out.println("Не все ответы получены за 60 с");
+        }
+
+        long[] sorted = new long[total];
+        int serverErrors = 0;
+        for (int i = 0; i < total; i++) {
+            sorted[i] = latencies.get(i);
+            if (statuses.get(i) >= 500) {
+                serverErrors++;
+            }
+        }
+        Arrays.sort(sorted);
+        return new Result(sorted, serverErrors);
+    }
+
+    private static HttpRequest request(String base, ThreadLocalRandom random, int productCount) {
+        int id = 1 + random.nextInt(productCount);
+        int kind = random.nextInt(10);
+        if (kind < 6) {
+            return HttpRequest.newBuilder(URI.create(base + "products/" + id)).GET().build();
+        }
+        if (kind < 8) {
+            String text = SEARCH_TEXTS[random.nextInt(SEARCH_TEXTS.length)];
+            return HttpRequest.newBuilder(URI.create(base + "products?limit=" + SEARCH_LIMIT + "&search="
+                    + URLEncoder.encode(text, StandardCharsets.UTF_8))).GET().build();
+        }
+        String movement = kind == 8 ? "receive" : "ship";
+        return HttpRequest.newBuilder(URI.create(base + "products/" + id + "/" + movement + "?quantity=1"))
+                .POST(HttpRequest.BodyPublishers.noBody()).build();
+    }
+
+    private static void busyWait(long nanos) {
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private static class Result {
+        final long[] latencies;
+        final int serverErrors;
+
+        Result(long[] latencies, int serverErrors) {
+            this.latencies = latencies;
+            this.serverErrors = serverErrors;
+        }
+
+        double percentile(double p) {
+            int index = Math.min(latencies.length - 1, (int) Math.ceil(p * latencies.length) - 1);
+            return latencies[Math.max(0, index)] / 1e6;
+        }
+    }
+}
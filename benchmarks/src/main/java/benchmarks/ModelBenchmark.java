@@ -0,0 +1,78 @@
+package benchmarks;
+
+import core.Product;
+import core.StockMovement;
+import model.InventoryModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Пропускная способность изменений через InventoryModel, то есть вместе с
+// обновлением ObservableList, FilteredList и SortedList, как в интерфейсе.
+// Модель пересоздается на каждую итерацию, чтобы размер оставался заданным.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ModelBenchmark {
+    private static final int MOVEMENT_BATCH = 100;
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private InventoryModel model;
+    private List<Product> products;
+    private int cursor;
+    private int added;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        model = InventoryModel.of(Products.inventory(size));
+        products = new ArrayList<>(model.getProductList());
+        cursor = 0;
+        added = 0;
+    }
+
+    private Product next() {
+        cursor = (cursor + 7919) % products.size();
+        return products.get(cursor);
+    }
+
+    @Benchmark
+    public boolean addProduct() {
+        return model.addProduct("Новый товар " + added++, "Бренд", 10.0, 5, 5);
+    }
+
+    @Benchmark
+    public boolean updateProduct() {
+        Product product = next();
+        return model.updateProduct(product, product.getName(), product.getBrand(), product.getPrice(),
+                product.getQuantity() ^ 1, product.getAverageQuantity());
+    }
+
+    // Удаление само по себе меняет размер, поэтому товар сразу возвращается
+    @Benchmark
+    public boolean removeAndAddProduct() {
+        Product product = next();
+        model.removeProduct(product);
+        boolean restored = model.addProduct(product.getName(), product.getBrand(), product.getPrice(),
+                product.getQuantity(), product.getAverageQuantity());
+        products.set(cursor, model.findProductByName(product.getName()));
+        return restored;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MOVEMENT_BATCH)
+    public List<StockMovement> applyMovements() {
+        List<StockMovement> batch = new ArrayList<>(MOVEMENT_BATCH);
+        for (int i = 0; i < MOVEMENT_BATCH; i++) {
+            int id = next().getId();
+            batch.add(i % 2 == 0 ? StockMovement.receive(id, 1) : StockMovement.ship(id, 1));
+        }
+        return model.applyMovements(batch);
+    }
+}
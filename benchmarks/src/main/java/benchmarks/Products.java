@@ -0,0 +1,40 @@
+package benchmarks;
+
+import core.CsvWriter;
+import core.Inventory;
+import core.Product;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Одинаковый от запуска к запуску набор товаров для всех бенчмарков
+final class Products {
+    static final int BRAND_COUNT = 200;
+
+    private Products() {
+    }
+
+    static List<Product> generate(int count) {
+        Random random = new Random(42);
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int quantity = random.nextInt(10) == 0 ? 0 : random.nextInt(500);
+            products.add(new Product(i + 1, "Товар " + i, "Бренд " + random.nextInt(BRAND_COUNT),
+                    (random.nextInt(100_000) + 1) / 100.0, quantity, random.nextInt(300)));
+        }
+        return products;
+    }
+
+    static Inventory inventory(int count) {
+        Inventory inventory = new Inventory();
+        inventory.importProducts(generate(count), true);
+        return inventory;
+    }
+
+    static void writeCsv(Path path, int count) throws IOException {
+        new CsvWriter().write(path, generate(count), () -> false, (rows, totalRows) -> { });
+    }
+}
@@ -0,0 +1,50 @@
+package benchmarks;
+
+import core.SearchIndex;
+import model.FilterModule;
+import model.InventoryModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Задержка поиска и фильтрации: подготовка результата по индексу (фоновый
+// поток в SearchPipeline) и применение фильтра к FilteredList.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class SearchBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    // Короткий запрос проверяет все товары, длинные идут через триграммы
+    @Param({"12", "товар 123", "бренд 7"})
+    public String query;
+
+    private InventoryModel model;
+    private FilterModule filterModule;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        model = InventoryModel.of(Products.inventory(size));
+        filterModule = new FilterModule(model);
+        model.getInventory().buildSearchIndex(); // Иначе первые итерации идут полным перебором
+    }
+
+    @Benchmark
+    public SearchIndex.Result prepareSearch() {
+        return model.prepareSearch(query);
+    }
+
+    // Применение и снятие поиска: оба раза FilteredList проверяет весь список
+    @Benchmark
+    public int searchFilter() {
+        filterModule.setSearchText(query);
+        int matches = model.getFilteredProducts().size();
+        filterModule.setSearchText("");
+        return matches;
+    }
+}
@@ -0,0 +1,70 @@
+package benchmarks;
+
+import core.Inventory;
+import core.Product;
+import core.ProductOrder;
+import core.ProductOrder.Column;
+import core.ProductOrder.SortKey;
+import model.InventoryModel;
+import model.SortingModule;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Время сортировки: через SortingModule и SortedList, как в интерфейсе,
+// и без JavaFX через Inventory.select
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class SortBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"По имени", "По цене", "По бренду и цене"})
+    public String order;
+
+    private Inventory inventory;
+    private SortingModule sortingModule;
+    private Comparator<Product> comparator;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        inventory = Products.inventory(size);
+        InventoryModel model = InventoryModel.of(inventory);
+        sortingModule = new SortingModule(model.getSortedProducts());
+
+        List<SortKey> keys;
+        switch (order) {
+            case "По имени":
+                keys = List.of(SortKey.ascending(Column.NAME));
+                break;
+            case "По цене":
+                keys = List.of(SortKey.descending(Column.PRICE));
+                break;
+            default:
+                keys = List.of(SortKey.ascending(Column.BRAND), SortKey.descending(Column.PRICE));
+                break;
+        }
+        ProductOrder productOrder = new ProductOrder();
+        productOrder.prepareKeys(keys, inventory.getProducts());
+        comparator = productOrder.comparator(keys);
+    }
+
+    // Возврат к порядку по ID почти бесплатен: список уже упорядочен по нему
+    @Benchmark
+    public void sortedList() {
+        sortingModule.setSorting(order);
+        sortingModule.setSorting("По ID");
+    }
+
+    @Benchmark
+    public List<Product> select() {
+        return inventory.select(null, comparator);
+    }
+}
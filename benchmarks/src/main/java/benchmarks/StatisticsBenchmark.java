@@ -0,0 +1,31 @@
+package benchmarks;
+
+import model.InventoryModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class StatisticsBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private InventoryModel model;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        model = InventoryModel.of(Products.inventory(size));
+    }
+
+    @Benchmark
+    public Map<String, Object> getStatistics() {
+        return model.getStatistics();
+    }
+}
@@ -1,15 +1,41 @@
 package application;
 
+import controller.ConcurrentStock;
+import controller.InventoryServer;
 import controller.MainController;
+import core.DataDirectory;
+import core.Inventory;
+import core.Journal;
+import core.Metrics;
+import core.Snapshot;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import model.InventoryModel;
+
+import java.io.IOException;
+import java.nio.file.Path;
 
 public class Main extends Application {
 
+    private static final Path SNAPSHOT_FILE = DataDirectory.resolve("inventory.snapshot");
+    private static final Path JOURNAL_FILE = DataDirectory.resolve("journal.bin");
+
+    private MainController controller;
+    private Inventory inventory;
+    private Journal journal;
+    private long epoch;
+    private InventoryServer server;
+    private ConcurrentStock concurrentStock;
+
     @Override
     public void start(Stage primaryStage) throws Exception {
-        MainController controller = new MainController(primaryStage);
+        inventory = new Inventory();
+        openJournal(inventory);
+        InventoryModel inventoryModel = InventoryModel.of(inventory);
+        controller = new MainController(primaryStage, inventoryModel);
+        startServer(inventoryModel);
 
         Scene scene = new Scene(controller.getMainView(), 1200, 800);
 
@@ -23,6 +49,60 @@ public class Main extends Application {
         primaryStage.show();
     }
 
+    // Загружает снимок и дописанный поверх него журнал, затем включает
+    // автосохранение. Примененный журнал сразу сворачивается в новый снимок.
+    private void openJournal(Inventory inventory) {
+        try {
+            epoch = Snapshot.read(SNAPSHOT_FILE, inventory);
+            if (Journal.replay(JOURNAL_FILE, inventory, epoch) > 0) {
+                Snapshot.write(SNAPSHOT_FILE, inventory, ++epoch);
+            }
+            journal = new Journal(JOURNAL_FILE, epoch);
+            inventory.setJournal(journal);
+        } catch (IOException e) {
+            Metrics.error("Журнал недоступен, автосохранение отключено: " + e.getMessage());
+        }
+    }
+
+    // HTTP API для терминалов включается свойством -Dinventory.http.port=порт,
+    // параллельный режим движений - дополнительно -Dinventory.http.concurrent=true
+    private void startServer(InventoryModel inventoryModel) {
+        String port = System.getProperty(InventoryServer.PORT_PROPERTY);
+        if (port == null) {
+            return;
+        }
+        if (Boolean.getBoolean(InventoryServer.CONCURRENT_PROPERTY)) {
+            concurrentStock = ConcurrentStock.start(inventoryModel, Platform::runLater, controller::updateStatistics);
+        }
+        try {
+            server = new InventoryServer(inventoryModel, Platform::runLater, controller::updateStatistics,
+                    concurrentStock);
+            server.start(Integer.parseInt(port));
+        } catch (IOException | NumberFormatException e) {
+            server = null;
+            Metrics.error("Не удалось запустить HTTP API на порту " + port + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (server != null) {
+            server.stop();
+        }
+        if (concurrentStock != null) {
+            concurrentStock.stop();
+        }
+        controller.shutdown();
+        if (journal != null) {
+            journal.close();
+            try {
+                Snapshot.write(SNAPSHOT_FILE, inventory, epoch + 1);
+            } catch (IOException e) {
+                Metrics.error("Не удалось сохранить снимок, данные останутся в журнале: " + e.getMessage());
+            }
+        }
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
@@ -0,0 +1,52 @@
+package controller;
+
+import core.CsvParser;
+import core.ProductStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+// Переносит CSV в каталог на диске. Товары не накапливаются в памяти:
+// каждая разобранная строка сразу дописывается в ProductStore.
+public class CatalogOpenTask extends CsvTask<ProductStore> {
+    private final File file;
+    private final Path directory;
+    private final CompletableFuture<?> previousClosed;
+    private int errorCount;
+
+    // previousClosed - закрытие прежнего каталога в том же каталоге на диске
+    public CatalogOpenTask(File file, Path directory, CompletableFuture<?> previousClosed) {
+        this.file = file;
+        this.directory = directory;
+        this.previousClosed = previousClosed;
+    }
+
+    public int getErrorCount() { return errorCount; }
+
+    @Override
+    protected ProductStore call() throws IOException {
+        startProgress();
+        previousClosed.join();
+        try (ProductStore.Writer writer = ProductStore.create(directory)) {
+            int errors = new CsvParser().stream(file.toPath(), this::isCancelled,
+                    (rows, bytesDone, totalBytes) -> reportProgress("Записано в каталог", rows, bytesDone, totalBytes),
+                    product -> {
+                        try {
+                            writer.add(product);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+            if (errors < 0) {
+                return null;
+            }
+            errorCount = errors;
+            return writer.finish();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
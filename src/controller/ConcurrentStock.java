@@ -0,0 +1,136 @@
+package controller;
+
+import core.ConcurrentInventory;
+import core.Inventory;
+import core.Product;
+import core.StockMovement;
+import model.InventoryModel;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Параллельный режим склада для HTTP API (-Dinventory.http.concurrent=true).
+// Движения остатков от касс применяются к ConcurrentInventory прямо в
+// потоках запросов, без перехода в поток JavaFX, а модель догоняет их
+// пачками: поток модели переносит в Inventory разницу по измененным
+// товарам через applyMovements, поэтому журнал, история, статистика и
+// таблица получают их как обычные движения. Остаток в ConcurrentInventory
+// главный. Правки из интерфейса (добавление, изменение, удаление, загрузка
+// файла) попадают в ConcurrentInventory через Inventory.Listener.
+public class ConcurrentStock implements Inventory.Listener {
+    private final InventoryModel inventoryModel;
+    private final Executor fxExecutor;
+    private final Runnable onChanged;
+    private final ConcurrentInventory stock = new ConcurrentInventory();
+
+    private final Set<Integer> changedIds = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean syncScheduled = new AtomicBoolean();
+    // Используется только в потоке модели: изменения, которые перенес сам
+    // ConcurrentStock, обратно не отражаются
+    private boolean syncing;
+
+    private ConcurrentStock(InventoryModel inventoryModel, Executor fxExecutor, Runnable onChanged) {
+        this.inventoryModel = inventoryModel;
+        this.fxExecutor = fxExecutor;
+        this.onChanged = onChanged;
+    }
+
+    // Вызывается в потоке модели. onChanged выполняется там же после каждой
+    // перенесенной пачки движений
+    public static ConcurrentStock start(InventoryModel inventoryModel, Executor fxExecutor, Runnable onChanged) {
+        ConcurrentStock concurrentStock = new ConcurrentStock(inventoryModel, fxExecutor, onChanged);
+        for (Product product : inventoryModel.getInventory().getProducts()) {
+            concurrentStock.stock.load(product);
+        }
+        concurrentStock.stock.setQuantityListener(concurrentStock::quantityChanged);
+        inventoryModel.getInventory().addListener(concurrentStock);
+        return concurrentStock;
+    }
+
+    public ConcurrentInventory getStock() { return stock; }
+
+    // Поток модели, после остановки сервера: последние движения переносятся
+    // сразу, чтобы попасть в журнал и снимок при выходе
+    public void stop() {
+        sync();
+        stock.setQuantityListener(null);
+        inventoryModel.getInventory().removeListener(this);
+    }
+
+    @Override
+    public void onAdded(List<Product> added) {
+        for (Product product : added) {
+            stock.load(product);
+        }
+    }
+
+    @Override
+    public void onUpdated(List<Product> updated) {
+        if (syncing) {
+            return;
+        }
+        for (Product product : updated) {
+            stock.updateProduct(product.getId(), product.getName(), product.getBrand(),
+                    product.getPrice(), product.getQuantity(), product.getAverageQuantity());
+        }
+    }
+
+    @Override
+    public void onRemoved(Product product) {
+        stock.removeProduct(product.getId());
+    }
+
+    @Override
+    public void onReplaced(List<Product> products) {
+        stock.clear();
+        for (Product product : products) {
+            stock.load(product);
+        }
+    }
+
+    // Поток запроса: товар отмечается до планирования переноса, так что
+    // перенос, запланированный раньше, его тоже увидит или запланирует новый
+    private void quantityChanged(int id) {
+        changedIds.add(id);
+        if (syncScheduled.compareAndSet(false, true)) {
+            fxExecutor.execute(this::sync);
+        }
+    }
+
+    // Поток модели. Отметка снимается до чтения остатка: движение после
+    // чтения отметит товар снова
+    private void sync() {
+        syncScheduled.set(false);
+        List<StockMovement> movements = new ArrayList<>();
+        for (Iterator<Integer> ids = changedIds.iterator(); ids.hasNext(); ) {
+            int id = ids.next();
+            ids.remove();
+            Product current = stock.findProductById(id);
+            Product product = inventoryModel.findProductById(id);
+            if (current == null || product == null) {
+                continue;
+            }
+            int delta = current.getQuantity() - product.getQuantity();
+            if (delta > 0) {
+                movements.add(StockMovement.receive(id, delta));
+            } else if (delta < 0) {
+                movements.add(StockMovement.ship(id, -delta));
+            }
+        }
+        if (movements.isEmpty()) {
+            return;
+        }
+        syncing = true;
+        try {
+            inventoryModel.applyMovements(movements);
+        } finally {
+            syncing = false;
+        }
+        onChanged.run();
+    }
+}
@@ -0,0 +1,23 @@
+package controller;
+
+import core.CsvParser;
+
+import java.io.File;
+import java.io.IOException;
+
+// Читает и разбирает CSV в фоновом потоке. Модель не изменяется:
+// результат передается в поток JavaFX целиком после завершения.
+public class CsvLoadTask extends CsvTask<CsvParser.Result> {
+    private final File file;
+
+    public CsvLoadTask(File file) {
+        this.file = file;
+    }
+
+    @Override
+    protected CsvParser.Result call() throws IOException {
+        startProgress();
+        return new CsvParser().parse(file.toPath(), this::isCancelled,
+                (rows, bytesDone, totalBytes) -> reportProgress("Прочитано строк", rows, bytesDone, totalBytes));
+    }
+}
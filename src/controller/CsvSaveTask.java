@@ -0,0 +1,27 @@
+package controller;
+
+import core.CsvWriter;
+import core.Product;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+// Записывает снимок списка товаров в фоновом потоке
+public class CsvSaveTask extends CsvTask<Integer> {
+    private final File file;
+    private final List<Product> products;
+
+    public CsvSaveTask(File file, List<Product> products) {
+        this.file = file;
+        this.products = products;
+    }
+
+    @Override
+    protected Integer call() throws IOException {
+        startProgress();
+        int rowCount = new CsvWriter().write(file.toPath(), products, this::isCancelled,
+                (rows, totalRows) -> reportProgress("Записано строк", rows, rows, totalRows));
+        return rowCount < 0 ? null : rowCount;
+    }
+}
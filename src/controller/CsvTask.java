@@ -0,0 +1,29 @@
+package controller;
+
+import javafx.concurrent.Task;
+
+// Общая основа фоновых операций с CSV: прогресс и скорость в строках в секунду
+abstract class CsvTask<V> extends Task<V> {
+    private static final long PROGRESS_INTERVAL_NANOS = 100_000_000L;
+
+    private long startTime;
+    private long lastReportTime;
+
+    protected void startProgress() {
+        startTime = System.nanoTime();
+        lastReportTime = 0;
+    }
+
+    protected void reportProgress(String action, long rows, long workDone, long totalWork) {
+        long now = System.nanoTime();
+        if (now - lastReportTime < PROGRESS_INTERVAL_NANOS) {
+            return;
+        }
+        lastReportTime = now;
+
+        long elapsed = Math.max(now - startTime, 1);
+        long rowsPerSecond = rows * 1_000_000_000L / elapsed;
+        updateProgress(workDone, totalWork);
+        updateMessage(action + ": " + rows + " (" + rowsPerSecond + " строк/с)");
+    }
+}
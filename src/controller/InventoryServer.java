@@ -0,0 +1,537 @@
+package controller;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import core.ConcurrentInventory;
+import core.Inventory;
+import core.InventoryStatistics;
+import core.Product;
+import core.SearchIndex;
+import core.StockMovement;
+import model.InventoryModel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.UnaryOperator;
+
+// Локальный HTTP API для кассовых терминалов. Слушает только loopback,
+// каждый запрос обслуживается в своем виртуальном потоке.
+//
+// Модель принадлежит потоку JavaFX, поэтому запрос разбирается в своем
+// потоке, а обращение к модели передается в fxExecutor (Platform::runLater)
+// и ожидается там же. Все, что накопилось к моменту выполнения, выполняется
+// одной задачей, а движения остатков применяются одной пачкой
+// applyMovements: интерфейс получает одно уведомление на пачку.
+// В параллельном режиме (ConcurrentStock) движения и чтение товаров идут
+// через ConcurrentInventory прямо в потоке запроса, без потока модели.
+//
+//   GET  /api/products/{id}                    товар
+//   GET  /api/products?search=текст&limit=N    поиск по имени и бренду
+//   POST /api/products/{id}/receive?quantity=N приход
+//   POST /api/products/{id}/ship?quantity=N    расход
+//   POST /api/movements                        строки "receive id N" / "ship id N"
+//   GET  /api/statistics                       статистика склада
+public class InventoryServer {
+    public static final String PORT_PROPERTY = "inventory.http.port";
+    public static final String CONCURRENT_PROPERTY = "inventory.http.concurrent";
+
+    private static final int DEFAULT_SEARCH_LIMIT = 50;
+    private static final long MODEL_TIMEOUT_SECONDS = 5;
+
+    private static class PendingMovement {
+        final StockMovement movement;
+        final boolean reportProduct;
+        final CompletableFuture<Boolean> applied = new CompletableFuture<>();
+        // Товар после движения, если reportProduct; записывается до applied
+        String productJson;
+        // Движение берет либо поток модели, либо запрос, отменяющий его по таймауту
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        PendingMovement(StockMovement movement, boolean reportProduct) {
+            this.movement = movement;
+            this.reportProduct = reportProduct;
+        }
+
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+    }
+
+    // Ответ с кодом ошибки; текст уходит клиенту, либо body целиком, если задано
+    private static class ApiException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+        final String body;
+
+        ApiException(int status, String message) {
+            this(status, message, null);
+        }
+
+        ApiException(int status, String message, String body) {
+            super(message);
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private final InventoryModel inventoryModel;
+    private final Executor fxExecutor;
+    private final Runnable onChanged;
+    // null - обычный режим, все обращения к складу идут через поток модели
+    private final ConcurrentInventory stock;
+
+    private final Queue<PendingMovement> pendingMovements = new ConcurrentLinkedQueue<>();
+    private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    private HttpServer server;
+    private ExecutorService requestExecutor;
+
+    // onChanged выполняется в потоке модели после каждой пачки движений
+    public InventoryServer(InventoryModel inventoryModel, Executor fxExecutor, Runnable onChanged) {
+        this(inventoryModel, fxExecutor, onChanged, null);
+    }
+
+    public InventoryServer(InventoryModel inventoryModel, Executor fxExecutor, Runnable onChanged,
+                           ConcurrentStock concurrentStock) {
+        this.inventoryModel = inventoryModel;
+        this.fxExecutor = fxExecutor;
+        this.onChanged = onChanged;
+        this.stock = concurrentStock == null ? null : concurrentStock.getStock();
+    }
+
+    public void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/api/", this::handle);
+        requestExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(requestExecutor);
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            requestExecutor.shutdownNow();
+            server = null;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int status = 200;
+        String body;
+        try {
+            body = route(exchange);
+        } catch (ApiException e) {
+            status = e.status;
+            body = e.body != null ? e.body : "{\"error\":" + quote(e.getMessage()) + "}";
+        } catch (RuntimeException e) {
+            status = 500;
+            body = "{\"error\":" + quote(String.valueOf(e.getMessage())) + "}";
+        }
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private String route(HttpExchange exchange) throws ApiException, IOException {
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().substring("/api/".length()).split("/");
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+        switch (path[0]) {
+            case "products":
+                if (path.length == 1) {
+                    requireMethod(method, "GET");
+                    return search(query);
+                }
+                int id = parseInt(path[1], "id");
+                if (path.length == 2) {
+                    requireMethod(method, "GET");
+                    return product(id);
+                }
+                if (path.length == 3 && (path[2].equals("receive") || path[2].equals("ship"))) {
+                    requireMethod(method, "POST");
+                    int quantity = parseInt(query.get("quantity"), "quantity");
+                    StockMovement movement = path[2].equals("receive")
+                            ? StockMovement.receive(id, quantity) : StockMovement.ship(id, quantity);
+                    return move(movement);
+                }
+                break;
+            case "movements":
+                if (path.length == 1) {
+                    requireMethod(method, "POST");
+                    try (InputStream in = exchange.getRequestBody()) {
+                        return moveAll(parseMovements(new String(in.readAllBytes(), StandardCharsets.UTF_8)));
+                    }
+                }
+                break;
+            case "statistics":
+                if (path.length == 1) {
+                    requireMethod(method, "GET");
+                    return callOnModel(() -> statisticsJson(inventoryModel.getInventory()));
+                }
+                break;
+        }
+        throw new ApiException(404, "неизвестный адрес");
+    }
+
+    private String product(int id) throws ApiException {
+        if (stock != null) {
+            Product product = stock.findProductById(id);
+            if (product == null) {
+                throw new ApiException(404, "товар не найден: " + id);
+            }
+            return productJson(product);
+        }
+        String json = callOnModel(() -> {
+            Product product = inventoryModel.findProductById(id);
+            return product == null ? null : productJson(product);
+        });
+        if (json == null) {
+            throw new ApiException(404, "товар не найден: " + id);
+        }
+        return json;
+    }
+
+    // Поиск выполняется в потоке запроса, как и у SearchPipeline, и
+    // останавливается на limit совпадениях; индекс он занимает частями, так
+    // что поток модели его почти не ждет. В потоке модели только
+    // отбрасываются успевшие удалиться товары. В параллельном режиме товары
+    // берутся из ConcurrentInventory, с текущим остатком
+    private String search(Map<String, String> query) throws ApiException {
+        String text = query.getOrDefault("search", "");
+        int limit = query.containsKey("limit") ? parseInt(query.get("limit"), "limit") : DEFAULT_SEARCH_LIMIT;
+        SearchIndex.Result result = inventoryModel.prepareSearch(text, limit);
+        if (stock != null) {
+            return searchJson(result, limit, product -> stock.findProductById(product.getId()));
+        }
+        return callOnModel(() -> searchJson(result, limit,
+                product -> inventoryModel.findProductById(product.getId()) == product ? product : null));
+    }
+
+    // current возвращает актуальное состояние товара или null, если его уже нет
+    private static String searchJson(SearchIndex.Result result, int limit, UnaryOperator<Product> current) {
+        StringBuilder json = new StringBuilder("[");
+        int count = 0;
+        for (Product match : result.getMatches()) {
+            if (count == limit) {
+                break;
+            }
+            Product product = current.apply(match);
+            if (product == null) {
+                continue;
+            }
+            if (count++ > 0) {
+                json.append(',');
+            }
+            json.append(productJson(product));
+        }
+        return json.append(']').toString();
+    }
+
+    private String move(StockMovement movement) throws ApiException {
+        if (stock != null) {
+            if (!moveConcurrently(movement)) {
+                throw new ApiException(409, "движение отклонено: " + movement);
+            }
+            return product(movement.getProductId());
+        }
+        // Товар для ответа берется в том же проходе модели: примененное
+        // движение не должно получить 503 из-за второго обращения к модели
+        PendingMovement pending = new PendingMovement(movement, true);
+        pendingMovements.add(pending);
+        scheduleDrain();
+        Boolean applied = awaitMovement(pending, deadline());
+        if (applied == null) {
+            throw new ApiException(503, "модель не отвечает, движение не применено: " + movement);
+        }
+        if (!applied) {
+            throw new ApiException(409, "движение отклонено: " + movement);
+        }
+        return pending.productJson;
+    }
+
+    // Если модель не ответила вовремя, оставшиеся движения отменяются и
+    // ответ 503 перечисляет их в cancelled: повтор только этих строк ничего
+    // не применит дважды
+    private String moveAll(List<StockMovement> movements) throws ApiException {
+        if (stock != null) {
+            int applied = 0;
+            StringBuilder rejected = new StringBuilder("[");
+            for (int i = 0; i < movements.size(); i++) {
+                if (moveConcurrently(movements.get(i))) {
+                    applied++;
+                } else {
+                    appendIndex(rejected, i);
+                }
+            }
+            return "{\"applied\":" + applied + ",\"rejected\":" + rejected.append(']') + "}";
+        }
+        List<PendingMovement> batch = new ArrayList<>(movements.size());
+        for (StockMovement movement : movements) {
+            batch.add(new PendingMovement(movement, false));
+        }
+        pendingMovements.addAll(batch);
+        scheduleDrain();
+
+        long deadline = deadline();
+        int applied = 0;
+        StringBuilder rejected = new StringBuilder("[");
+        StringBuilder cancelled = new StringBuilder("[");
+        for (int i = 0; i < batch.size(); i++) {
+            Boolean result = awaitMovement(batch.get(i), deadline);
+            if (result == null) {
+                appendIndex(cancelled, i);
+            } else if (result) {
+                applied++;
+            } else {
+                appendIndex(rejected, i);
+            }
+        }
+        String json = "{\"applied\":" + applied + ",\"rejected\":" + rejected.append(']') + "}";
+        if (cancelled.length() > 1) {
+            json = json.substring(0, json.length() - 1) + ",\"cancelled\":" + cancelled.append(']') + "}";
+            throw new ApiException(503, "модель не отвечает", json);
+        }
+        return json;
+    }
+
+    private static void appendIndex(StringBuilder list, int index) {
+        if (list.length() > 1) {
+            list.append(',');
+        }
+        list.append(index);
+    }
+
+    // Те же правила, что у Inventory.applyMovements: количество положительное,
+    // остаток не уходит ниже нуля
+    private boolean moveConcurrently(StockMovement movement) {
+        return movement.getQuantity() > 0 && stock.adjustQuantity(movement.getProductId(), movement.getDelta());
+    }
+
+    private <T> T callOnModel(Callable<T> call) throws ApiException {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        pendingTasks.add(() -> {
+            try {
+                result.complete(call.call());
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+        scheduleDrain();
+        return await(result);
+    }
+
+    private <T> T await(CompletableFuture<T> future) throws ApiException {
+        try {
+            return future.get(MODEL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            throw new ApiException(503, "модель не отвечает");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiException(503, "запрос прерван");
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static long deadline() {
+        return System.nanoTime() + TimeUnit.SECONDS.toNanos(MODEL_TIMEOUT_SECONDS);
+    }
+
+    // true - применено, false - отклонено, null - отменено по таймауту и
+    // применено уже не будет. Движение, которое поток модели успел взять,
+    // отменить нельзя: тогда ждем результата пачки.
+    private static Boolean awaitMovement(PendingMovement pending, long deadline) {
+        try {
+            return pending.applied.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            if (pending.claim()) {
+                return null;
+            }
+            try {
+                return pending.applied.join();
+            } catch (CompletionException joinFailure) {
+                throw new RuntimeException(joinFailure.getCause());
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            fxExecutor.execute(this::drain);
+        }
+    }
+
+    // Выполняется в потоке модели. Флаг снимается до разбора очередей:
+    // все, что добавят после этого, запланирует следующий проход.
+    private void drain() {
+        drainScheduled.set(false);
+
+        List<PendingMovement> batch = new ArrayList<>();
+        for (PendingMovement pending; (pending = pendingMovements.poll()) != null; ) {
+            if (pending.claim()) {
+                batch.add(pending);
+            }
+        }
+        if (!batch.isEmpty()) {
+            applyBatch(batch);
+        }
+
+        for (Runnable task; (task = pendingTasks.poll()) != null; ) {
+            task.run();
+        }
+    }
+
+    private void applyBatch(List<PendingMovement> batch) {
+        List<StockMovement> movements = new ArrayList<>(batch.size());
+        for (PendingMovement pending : batch) {
+            movements.add(pending.movement);
+        }
+        Set<StockMovement> rejected = Collections.newSetFromMap(new IdentityHashMap<>());
+        try {
+            rejected.addAll(inventoryModel.applyMovements(movements));
+        } catch (RuntimeException e) {
+            for (PendingMovement pending : batch) {
+                pending.applied.completeExceptionally(e);
+            }
+            return;
+        }
+        for (PendingMovement pending : batch) {
+            boolean accepted = !rejected.contains(pending.movement);
+            if (accepted && pending.reportProduct) {
+                Product product = inventoryModel.findProductById(pending.movement.getProductId());
+                pending.productJson = product == null ? null : productJson(product);
+            }
+            pending.applied.complete(accepted);
+        }
+        onChanged.run();
+    }
+
+    private static List<StockMovement> parseMovements(String body) throws ApiException {
+        List<StockMovement> movements = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] parts = line.split("\\s+");
+            if (parts.length != 3) {
+                throw new ApiException(400, "ожидается \"receive|ship id количество\": " + line);
+            }
+            int id = parseInt(parts[1], "id");
+            int quantity = parseInt(parts[2], "quantity");
+            if (parts[0].equals("receive")) {
+                movements.add(StockMovement.receive(id, quantity));
+            } else if (parts[0].equals("ship")) {
+                movements.add(StockMovement.ship(id, quantity));
+            } else {
+                throw new ApiException(400, "неизвестное движение: " + parts[0]);
+            }
+        }
+        return movements;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            query.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return query;
+    }
+
+    private static int parseInt(String value, String name) throws ApiException {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "некорректное значение " + name + ": " + value);
+        }
+    }
+
+    private static void requireMethod(String method, String expected) throws ApiException {
+        if (!method.equals(expected)) {
+            throw new ApiException(405, "ожидается " + expected);
+        }
+    }
+
+    private static String productJson(Product product) {
+        return "{\"id\":" + product.getId() +
+                ",\"name\":" + quote(product.getName()) +
+                ",\"brand\":" + quote(product.getBrand()) +
+                ",\"price\":" + product.getPrice() +
+                ",\"quantity\":" + product.getQuantity() +
+                ",\"averageQuantity\":" + product.getAverageQuantity() + "}";
+    }
+
+    // Те же поля, что у Inventory.getStatistics(), но числами JSON: строки
+    // для интерфейса форматируются в локали пользователя ("1234,50")
+    private static String statisticsJson(Inventory inventory) {
+        InventoryStatistics statistics = inventory.getInventoryStatistics();
+        int productCount = statistics.getProductCount();
+        int uniqueNames = statistics.getUniqueNameCount();
+        return "{\"addOperations\":" + inventory.getAddOperations() +
+                ",\"avgProductsPerName\":" + decimal(productCount / (double) Math.max(uniqueNames, 1)) +
+                ",\"avgStockValue\":" + decimal(statistics.getAverageStockValue()) +
+                ",\"deleteOperations\":" + inventory.getDeleteOperations() +
+                ",\"lowStockCount\":" + statistics.getLowStockCount() +
+                ",\"movementOperations\":" + inventory.getMovementOperations() +
+                ",\"totalProducts\":" + productCount +
+                ",\"totalStockValue\":" + decimal(statistics.getTotalStockValue()) +
+                ",\"uniqueNames\":" + uniqueNames +
+                ",\"updateOperations\":" + inventory.getUpdateOperations() +
+                ",\"zeroStockCount\":" + statistics.getZeroStockCount() + "}";
+    }
+
+    private static String decimal(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    private static String quote(String text) {
+        StringBuilder quoted = new StringBuilder(text.length() + 2).append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"': quoted.append("\\\""); break;
+                case '\\': quoted.append("\\\\"); break;
+                case '\n': quoted.append("\\n"); break;
+                case '\r': quoted.append("\\r"); break;
+                case '\t': quoted.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -1,14 +1,20 @@
 package controller;
 
+import core.*;
+import javafx.application.Platform;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import model.*;
 import view.MainView;
 import view.ProductDialog;
 
-import java.io.*;
-import java.util.Locale;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class MainController {
 
@@ -16,19 +22,29 @@ public class MainController {
     private InventoryModel inventoryModel;
     private SortingModule sortingModule;
     private FilterModule filterModule;
+    private SearchPipeline searchPipeline;
+    private ProductCatalog catalog;
+    private CompletableFuture<Void> catalogClosed = CompletableFuture.completedFuture(null);
+    private String sortType = "По ID";
     private Stage primaryStage;
 
     public MainController(Stage primaryStage) {
+        this(primaryStage, InventoryModel.of());
+    }
+
+    public MainController(Stage primaryStage, InventoryModel inventoryModel) {
         this.primaryStage = primaryStage;
-        initializeModel();
+        initializeModel(inventoryModel);
         initializeView();
         setupEventHandlers();
     }
 
-    private void initializeModel() {
-        inventoryModel = new InventoryModel();
+    private void initializeModel(InventoryModel model) {
+        inventoryModel = model;
+        inventoryModel.getHistory().setSpillFile(DataDirectory.resolve("history.log"));
         sortingModule = new SortingModule(inventoryModel.getSortedProducts());
         filterModule = new FilterModule(inventoryModel);
+        searchPipeline = new SearchPipeline(inventoryModel, filterModule);
     }
 
     private void initializeView() {
@@ -36,7 +52,6 @@ public class MainController {
 
         mainView.getProductsTable().setItems(inventoryModel.getSortedProducts());
 
-        updateHistory();
         updateStatistics();
     }
 
@@ -44,14 +59,19 @@ public class MainController {
     }
 
     public void handleAddProduct() {
+        if (isCatalogOpen()) {
+            return;
+        }
         ProductDialog dialog = new ProductDialog(this, ProductDialog.Mode.ADD);
         dialog.show();
 
         updateStatistics();
-        updateHistory();
     }
 
     public void handleEditProduct() {
+        if (isCatalogOpen()) {
+            return;
+        }
         Product selectedProduct = mainView.getProductsTable().getSelectionModel().getSelectedItem();
         if (selectedProduct != null) {
             showEditConfirmation(selectedProduct);
@@ -61,6 +81,9 @@ public class MainController {
     }
 
     public void handleDeleteProduct() {
+        if (isCatalogOpen()) {
+            return;
+        }
         Product selectedProduct = mainView.getProductsTable().getSelectionModel().getSelectedItem();
         if (selectedProduct != null) {
             showDeleteConfirmation(selectedProduct);
@@ -74,29 +97,53 @@ public class MainController {
             saveToFile();
         } else if ("Загрузить".equals(operation)) {
             loadFromFile();
-            updateStatistics();
-            updateHistory();
+        } else if ("Открыть каталог".equals(operation)) {
+            openCatalog();
+        } else if ("Закрыть каталог".equals(operation)) {
+            closeCatalog();
         }
         mainView.resetFileComboBox();
     }
 
+    // Пока открыт каталог, поиск, сортировка и отбор применяются к нему,
+    // а склад в памяти получает их при закрытии каталога
     public void handleSearchChange(String newValue) {
-        filterModule.setSearchText(newValue);
+        if (catalog != null) {
+            catalog.setSearchText(newValue);
+        } else {
+            searchPipeline.submit(newValue);
+        }
     }
 
     public void handleSortChange(String newValue) {
-        sortingModule.setSorting(newValue);
+        sortType = newValue;
+        if (catalog != null) {
+            catalog.setSorting(SortingModule.keysFor(newValue));
+        } else {
+            sortingModule.setSorting(newValue);
+        }
     }
 
     public void handleMinQuantityChange(Integer newValue) {
-        filterModule.setMinQuantity(newValue);
+        if (catalog != null) {
+            catalog.setMinQuantity(newValue);
+        } else {
+            filterModule.setMinQuantity(newValue);
+        }
     }
 
     public void handleShowZeroQuantityChange(Boolean newValue) {
-        filterModule.setShowZeroQuantity(newValue);
+        if (catalog != null) {
+            catalog.setShowZeroQuantity(newValue);
+        } else {
+            filterModule.setShowZeroQuantity(newValue);
+        }
     }
 
     public void showEditConfirmation(Product product) {
+        if (isCatalogOpen()) {
+            return;
+        }
         javafx.scene.control.Alert confirmation = new javafx.scene.control.Alert(javafx.scene.control.Alert.AlertType.CONFIRMATION);
         confirmation.setTitle("Подтверждение");
         confirmation.setHeaderText("Редактирование товара");
@@ -114,7 +161,6 @@ public class MainController {
         dialog.show();
 
         updateStatistics();
-        updateHistory();
     }
 
     public void showDeleteConfirmation(Product product) {
@@ -127,7 +173,6 @@ public class MainController {
             if (response == javafx.scene.control.ButtonType.OK) {
                 inventoryModel.removeProduct(product);
                 updateStatistics();
-                updateHistory();
             }
         });
     }
@@ -179,35 +224,26 @@ public class MainController {
         fileChooser.setTitle("Сохранить данные");
         fileChooser.getExtensionFilters().addAll(
                 new FileChooser.ExtensionFilter("CSV files", "*.csv"),
+                new FileChooser.ExtensionFilter("CSV gzip", "*.csv.gz"),
                 new FileChooser.ExtensionFilter("Text files", "*.txt"),
                 new FileChooser.ExtensionFilter("All files", "*.*")
         );
 
         File file = fileChooser.showSaveDialog(primaryStage);
         if (file != null) {
-            try (PrintWriter writer = new PrintWriter(file)) {
-                writer.println("ID,Name,Brand,Price,Quantity,AverageQuantity");
-
-                for (Product product : inventoryModel.getProductList()) {
-                    String priceFormatted = String.format(Locale.US, "%.2f", product.getPrice());
-                    if (priceFormatted.endsWith(".00")) {
-                        priceFormatted = priceFormatted.substring(0, priceFormatted.length() - 3);
-                    }
-
-                    writer.printf("%d,%s,%s,%s,%d,%d%n",
-                            product.getId(),
-                            product.getName(),
-                            product.getBrand(),
-                            priceFormatted, // Используем отформатированную цену
-                            product.getQuantity(),
-                            product.getAverageQuantity());
-                }
+            CsvSaveTask task = new CsvSaveTask(file, new ArrayList<>(inventoryModel.getProductList()));
 
+            task.setOnSucceeded(e -> {
+                mainView.hideProgress();
                 showAlert("Успех", "Данные успешно сохранены в файл: " + file.getName(), javafx.scene.control.Alert.AlertType.INFORMATION);
-
-            } catch (IOException e) {
-                showAlert("Ошибка", "Не удалось сохранить файл: " + e.getMessage(), javafx.scene.control.Alert.AlertType.ERROR);
-            }
+            });
+            task.setOnCancelled(e -> mainView.hideProgress());
+            task.setOnFailed(e -> {
+                mainView.hideProgress();
+                showAlert("Ошибка", "Не удалось сохранить файл: " + task.getException().getMessage(), javafx.scene.control.Alert.AlertType.ERROR);
+            });
+
+            runInBackground(task, "csv-save");
         }
     }
 
@@ -216,92 +252,157 @@ public class MainController {
         fileChooser.setTitle("Загрузить данные");
         fileChooser.getExtensionFilters().addAll(
                 new FileChooser.ExtensionFilter("CSV files", "*.csv"),
+                new FileChooser.ExtensionFilter("CSV gzip", "*.csv.gz"),
                 new FileChooser.ExtensionFilter("Text files", "*.txt"),
                 new FileChooser.ExtensionFilter("All files", "*.*")
         );
 
         File file = fileChooser.showOpenDialog(primaryStage);
         if (file != null) {
-            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                String line = reader.readLine(); // Пропускаем заголовок
-
-                inventoryModel.getProductList().clear();
-
-                int loadedCount = 0;
-                int errorCount = 0;
-
-                while ((line = reader.readLine()) != null) {
-                    try {
-                        String[] parts = line.split(",");
-                        if (parts.length >= 6) {
-                            int id = Integer.parseInt(parts[0].trim());
-                            String name = parts[1].trim();
-                            String brand = parts[2].trim();
-
-                            String priceStr = parts[3].trim();
-                            double price;
-                            if (priceStr.contains(",")) {
-                                priceStr = priceStr.replace(",", ".");
-                            }
-                            price = Double.parseDouble(priceStr);
-
-                            int quantity = Integer.parseInt(parts[4].trim());
-                            int avgQuantity = Integer.parseInt(parts[5].trim());
-
-                            boolean success = inventoryModel.loadProductFromFile(id, name, brand, price, quantity, avgQuantity);
-                            if (success) {
-                                loadedCount++;
-                            } else {
-                                errorCount++;
-                                System.err.println("Не удалось загрузить товар: " + name + " (" + brand + ")");
-                            }
-                        } else {
-                            errorCount++;
-                            System.err.println("Неверный формат строки: " + line);
-                        }
-                    } catch (NumberFormatException e) {
-                        errorCount++;
-                        System.err.println("Ошибка преобразования числа в строке: " + line);
-                    } catch (Exception e) {
-                        errorCount++;
-                        System.err.println("Ошибка при загрузке строки: " + line + " - " + e.getMessage());
-                    }
-                }
-
-                filterModule.setMinQuantity(0);
-                filterModule.setShowZeroQuantity(true);
-                filterModule.setSearchText("");
-
-                mainView.getMinQuantitySpinner().getValueFactory().setValue(0);
-                mainView.getShowZeroQuantityCheckbox().setSelected(true);
-                mainView.getSearchField().setText("");
+            CsvLoadTask task = new CsvLoadTask(file);
+
+            task.setOnSucceeded(e -> {
+                mainView.hideProgress();
+                applyLoadedProducts(file, task.getValue());
+            });
+            task.setOnCancelled(e -> mainView.hideProgress());
+            task.setOnFailed(e -> {
+                mainView.hideProgress();
+                showAlert("Ошибка", "Не удалось загрузить файл: " + task.getException().getMessage(), javafx.scene.control.Alert.AlertType.ERROR);
+            });
+
+            runInBackground(task, "csv-load");
+        }
+    }
 
-                updateStatistics();
-                updateHistory();
+    // Вызывается в потоке JavaFX: модель изменяется только здесь, одним пакетом
+    private void applyLoadedProducts(File file, CsvParser.Result result) {
+        closeCatalog();
+        List<Product> products = result.getProducts();
+        List<Product> rejected = inventoryModel.importProducts(products, true);
+        for (Product product : rejected) {
+            Metrics.error("Не удалось загрузить товар: " + product.getName() + " (" + product.getBrand() + ")");
+        }
+        int loadedCount = products.size() - rejected.size();
+        int errorCount = result.getErrorCount() + rejected.size();
 
-                String message = "Данные успешно загружены из файла: " + file.getName() +
-                        "\nЗагружено товаров: " + loadedCount;
-                if (errorCount > 0) {
-                    message += "\nНе загружено товаров из-за ошибок: " + errorCount;
-                }
+        filterModule.setMinQuantity(0);
+        filterModule.setShowZeroQuantity(true);
+        searchPipeline.submitNow("");
 
-                showAlert("Успех", message, javafx.scene.control.Alert.AlertType.INFORMATION);
+        mainView.getMinQuantitySpinner().getValueFactory().setValue(0);
+        mainView.getShowZeroQuantityCheckbox().setSelected(true);
+        mainView.getSearchField().setText("");
 
-            } catch (IOException e) {
-                showAlert("Ошибка", "Не удалось загрузить файл: " + e.getMessage(), javafx.scene.control.Alert.AlertType.ERROR);
-            }
+        updateStatistics();
+
+        String message = "Данные успешно загружены из файла: " + file.getName() +
+                "\nЗагружено товаров: " + loadedCount;
+        if (errorCount > 0) {
+            message += "\nНе загружено товаров из-за ошибок: " + errorCount;
+        }
+
+        showAlert("Успех", message, javafx.scene.control.Alert.AlertType.INFORMATION);
+    }
+
+    private void openCatalog() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Открыть каталог");
+        fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV files", "*.csv"),
+                new FileChooser.ExtensionFilter("CSV gzip", "*.csv.gz"),
+                new FileChooser.ExtensionFilter("All files", "*.*")
+        );
+
+        File file = fileChooser.showOpenDialog(primaryStage);
+        if (file == null) {
+            return;
+        }
+        // Каталог переписывается заново, поэтому запись начинается, когда прежний закроется
+        closeCatalog();
+        CatalogOpenTask task = new CatalogOpenTask(file, DataDirectory.resolve("catalog"), catalogClosed);
+
+        task.setOnSucceeded(e -> {
+            mainView.hideProgress();
+            applyCatalog(file, task.getValue(), task.getErrorCount());
+        });
+        task.setOnCancelled(e -> mainView.hideProgress());
+        task.setOnFailed(e -> {
+            mainView.hideProgress();
+            showAlert("Ошибка", "Не удалось открыть каталог: " + task.getException().getMessage(), javafx.scene.control.Alert.AlertType.ERROR);
+        });
+
+        runInBackground(task, "catalog-open");
+    }
+
+    // Таблица переключается на каталог; текущие поиск, сортировка и отбор
+    // сразу отправляются в каталог запросом
+    private void applyCatalog(File file, ProductStore store, int errorCount) {
+        try {
+            catalog = new ProductCatalog(store, Platform::runLater,
+                    products -> mainView.getProductsTable().setItems(products));
+        } catch (IOException e) {
+            showAlert("Ошибка", "Не удалось открыть каталог: " + e.getMessage(), javafx.scene.control.Alert.AlertType.ERROR);
+            return;
+        }
+        mainView.getProductsTable().setItems(catalog.getProducts());
+        catalog.setSorting(SortingModule.keysFor(sortType));
+        catalog.setMinQuantity(mainView.getMinQuantitySpinner().getValue());
+        catalog.setShowZeroQuantity(mainView.getShowZeroQuantityCheckbox().isSelected());
+        catalog.setSearchText(mainView.getSearchField().getText());
+
+        String message = "Каталог открыт из файла: " + file.getName() +
+                "\nТоваров в каталоге: " + catalog.size() +
+                "\nКаталог доступен только для просмотра";
+        if (errorCount > 0) {
+            message += "\nНе загружено товаров из-за ошибок: " + errorCount;
+        }
+        showAlert("Успех", message, javafx.scene.control.Alert.AlertType.INFORMATION);
+    }
+
+    // Таблица возвращается к складу в памяти с текущими условиями отбора
+    private void closeCatalog() {
+        if (catalog == null) {
+            return;
+        }
+        releaseCatalog();
+        sortingModule.setSorting(sortType);
+        filterModule.setMinQuantity(mainView.getMinQuantitySpinner().getValue());
+        filterModule.setShowZeroQuantity(mainView.getShowZeroQuantityCheckbox().isSelected());
+        searchPipeline.submitNow(mainView.getSearchField().getText());
+        mainView.getProductsTable().setItems(inventoryModel.getSortedProducts());
+    }
+
+    private void releaseCatalog() {
+        catalog.close();
+        catalogClosed = catalog.whenClosed();
+        catalog = null;
+    }
+
+    private boolean isCatalogOpen() {
+        if (catalog == null) {
+            return false;
         }
+        showAlert("Каталог", "Каталог доступен только для просмотра. Закройте его, чтобы изменять товары склада.",
+                javafx.scene.control.Alert.AlertType.INFORMATION);
+        return true;
     }
 
+    private void runInBackground(CsvTask<?> task, String threadName) {
+        mainView.showProgress(task);
+        Thread.ofVirtual().name(threadName).start(task);
+    }
+
+    // Статистика обновляется только пока ее вкладка открыта;
+    // при переключении на вкладку MainView запрашивает свежие данные
     public void updateStatistics() {
+        if (!mainView.isStatisticsVisible()) {
+            return;
+        }
         Map<String, Object> stats = inventoryModel.getStatistics();
         mainView.updateStatistics(stats);
     }
 
-    private void updateHistory() {
-        mainView.updateHistoryString(inventoryModel.getChangeHistory());
-    }
-
     private void showAlert(String title, String content, javafx.scene.control.Alert.AlertType type) {
         javafx.scene.control.Alert alert = new javafx.scene.control.Alert(type);
         alert.setTitle(title);
@@ -310,6 +411,31 @@ public class MainController {
         alert.showAndWait();
     }
 
+    public void handleExportDiagnostics() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Выгрузить диагностику");
+        fileChooser.setInitialFileName("diagnostics.txt");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Text files", "*.txt"));
+
+        File file = fileChooser.showSaveDialog(primaryStage);
+        if (file != null) {
+            try {
+                Files.writeString(file.toPath(), Metrics.report());
+            } catch (IOException e) {
+                showAlert("Ошибка", "Не удалось выгрузить диагностику: " + e.getMessage(), javafx.scene.control.Alert.AlertType.ERROR);
+            }
+        }
+    }
+
+    public void shutdown() {
+        if (catalog != null) {
+            releaseCatalog();
+        }
+        mainView.shutdown();
+        searchPipeline.shutdown();
+        inventoryModel.getHistory().closeSpillFile();
+    }
+
     public MainView getMainView() {
         return mainView;
     }
@@ -0,0 +1,90 @@
+package controller;
+
+import core.SearchIndex;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.util.Duration;
+import model.FilterModule;
+import model.InventoryModel;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Связывает поле поиска с FilterModule: нажатия клавиш в пределах окна
+// объединяются, поиск по индексу выполняется в фоновом потоке, а в
+// FilteredList попадает только результат самого свежего запроса.
+public class SearchPipeline {
+    public static final Duration DEFAULT_WINDOW = Duration.millis(200);
+
+    private final InventoryModel inventoryModel;
+    private final FilterModule filterModule;
+    private final PauseTransition debounce;
+    private final ExecutorService executor;
+
+    // Все поля ниже используются только в потоке JavaFX
+    private String pendingText = "";
+    private long generation;
+    private Future<?> inFlight;
+
+    public SearchPipeline(InventoryModel inventoryModel, FilterModule filterModule) {
+        this(inventoryModel, filterModule, DEFAULT_WINDOW);
+    }
+
+    public SearchPipeline(InventoryModel inventoryModel, FilterModule filterModule, Duration window) {
+        this.inventoryModel = inventoryModel;
+        this.filterModule = filterModule;
+        this.debounce = new PauseTransition(window);
+        this.debounce.setOnFinished(e -> startSearch(pendingText));
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    public void setWindow(Duration window) {
+        debounce.setDuration(window);
+    }
+
+    public void submit(String text) {
+        pendingText = text;
+        invalidateInFlight();
+        debounce.playFromStart();
+    }
+
+    // Применяет запрос сразу, минуя задержку и фоновый поток
+    public void submitNow(String text) {
+        debounce.stop();
+        invalidateInFlight();
+        filterModule.setSearchText(text);
+    }
+
+    public void shutdown() {
+        debounce.stop();
+        invalidateInFlight();
+        executor.shutdownNow();
+    }
+
+    private void startSearch(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            filterModule.setSearchText("");
+            return;
+        }
+
+        long requestGeneration = generation;
+        inFlight = executor.submit(() -> {
+            SearchIndex.Result result = inventoryModel.prepareSearch(text);
+            Platform.runLater(() -> {
+                if (requestGeneration == generation) {
+                    inFlight = null;
+                    filterModule.setSearchResult(text, result);
+                }
+            });
+        });
+    }
+
+    private void invalidateInFlight() {
+        generation++;
+        if (inFlight != null) {
+            inFlight.cancel(true);
+            inFlight = null;
+        }
+    }
+}
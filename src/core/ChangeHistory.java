@@ -0,0 +1,168 @@
+package core;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// История изменений в кольцевом буфере ограниченного размера. Записи,
+// вытесненные из буфера, дописываются в текстовый файл, если он задан.
+public class ChangeHistory {
+    public static final int DEFAULT_CAPACITY = 10_000;
+
+    public interface Listener {
+        // Записи, добавленные одной пачкой, и вытесненные ими из буфера
+        void onAppended(List<HistoryEvent> appended, List<HistoryEvent> evicted);
+        void onCleared(List<HistoryEvent> removed);
+    }
+
+    private final HistoryEvent[] ring;
+    private int head;
+    private int size;
+    private final List<Listener> listeners = new ArrayList<>();
+
+    private BufferedWriter spillWriter;
+
+    public ChangeHistory() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ChangeHistory(int capacity) {
+        this.ring = new HistoryEvent[capacity];
+    }
+
+    public void setSpillFile(Path file) {
+        closeSpillFile();
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            spillWriter = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            Metrics.error("Не удалось открыть файл истории: " + file + " - " + e.getMessage());
+        }
+    }
+
+    public void append(HistoryEvent event) {
+        appendAll(Collections.singletonList(event));
+    }
+
+    // Подписчики получают одно уведомление на всю пачку
+    public void appendAll(List<HistoryEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        // Записи сверх емкости буфера вытеснились бы той же пачкой - сразу отправляем их в файл
+        int overflow = Math.max(0, events.size() - ring.length);
+        for (int i = 0; i < overflow; i++) {
+            spill(events.get(i));
+        }
+        List<HistoryEvent> appended = overflow == 0 ? events : events.subList(overflow, events.size());
+
+        List<HistoryEvent> evicted = Collections.emptyList();
+        for (HistoryEvent event : appended) {
+            if (size == ring.length) {
+                if (evicted.isEmpty()) {
+                    evicted = new ArrayList<>();
+                }
+                HistoryEvent oldest = ring[head];
+                evicted.add(oldest);
+                ring[head] = event;
+                head = (head + 1) % ring.length;
+                spill(oldest);
+            } else {
+                ring[(head + size) % ring.length] = event;
+                size++;
+            }
+        }
+        if (overflow > 0 || !evicted.isEmpty()) {
+            flushSpill();
+        }
+        for (Listener listener : listeners) {
+            listener.onAppended(appended, evicted);
+        }
+    }
+
+    public HistoryEvent get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Запись " + index + " вне диапазона 0.." + (size - 1));
+        }
+        return ring[(head + index) % ring.length];
+    }
+
+    public int size() { return size; }
+    public int getCapacity() { return ring.length; }
+
+    public void clear() {
+        List<HistoryEvent> removed = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            removed.add(get(i));
+            spill(get(i));
+        }
+        if (!removed.isEmpty()) {
+            flushSpill();
+        }
+        Arrays.fill(ring, null);
+        head = 0;
+        size = 0;
+        for (Listener listener : listeners) {
+            listener.onCleared(removed);
+        }
+    }
+
+    public void addListener(Listener listener) { listeners.add(listener); }
+    public void removeListener(Listener listener) { listeners.remove(listener); }
+
+    public void closeSpillFile() {
+        if (spillWriter == null) {
+            return;
+        }
+        try {
+            spillWriter.close();
+        } catch (IOException e) {
+            Metrics.error("Ошибка при закрытии файла истории: " + e.getMessage());
+        }
+        spillWriter = null;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            text.append(get(i).format()).append("\n");
+        }
+        return text.toString();
+    }
+
+    private void spill(HistoryEvent event) {
+        if (spillWriter == null) {
+            return;
+        }
+        try {
+            spillWriter.write(event.formatWithDate());
+            spillWriter.newLine();
+        } catch (IOException e) {
+            Metrics.error("Не удалось записать историю в файл: " + e.getMessage());
+            closeSpillFile();
+        }
+    }
+
+    // Вытесненные записи есть только в файле, поэтому каждая пачка сразу
+    // сбрасывается на диск: при аварийном завершении теряется не больше одной пачки
+    private void flushSpill() {
+        if (spillWriter == null) {
+            return;
+        }
+        try {
+            spillWriter.flush();
+        } catch (IOException e) {
+            Metrics.error("Не удалось записать историю в файл: " + e.getMessage());
+            closeSpillFile();
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package core;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntConsumer;
+
+// Склад для одновременной работы нескольких потоков (кассы через HTTP API,
+// импорт, интерфейс). id выдаются атомарно, индекс уникальности имени и
+// бренда защищен полосами блокировок (разные ключи почти никогда не ждут
+// друг друга), а движение остатка - это CAS без блокировок.
+//
+// Состояние товара - неизменяемый Product, который заменяется целиком
+// через CAS по ссылке: остаток и уровень запаса всегда согласованы, а
+// findProductById отдает объект, который можно читать без блокировок.
+// Удаленный товар заменяется на null, поэтому движение, которое успело
+// найти товар до удаления, не изменит общий остаток.
+//
+// snapshot() не останавливает писателей. На время снимка публикуется
+// SnapshotRun; писатель, который его видит, до замены товара сохраняет
+// в нем прежнее состояние (только первое), а снимок берет для каждого
+// товара сохраненное состояние либо фиксирует текущее сам. Так снимок
+// соответствует складу на момент публикации SnapshotRun, а писатели платят
+// только putIfAbsent, пока снимок идет. Чтобы ни одна замена не разошлась с
+// публикацией (писатель не увидел SnapshotRun, а заменил состояние уже
+// после нее), проверка, сохранение и CAS выполняются под блокировкой чтения
+// publishLock, а снимок берет блокировку записи только на публикацию и
+// снятие SnapshotRun.
+//
+// История и журнал в этом режиме не ведутся: их ведет Inventory, в
+// который изменения переносит ConcurrentStock.
+public class ConcurrentInventory {
+    private static final int STRIPE_COUNT = 64;
+    // Отметка в снимке: товара на момент начала снимка еще не было
+    private static final Product ABSENT = new Product(0, "", "", 0, 0, 0);
+
+    private static final VarHandle STATE;
+
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(Entry.class, "state", Product.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static class Entry {
+        final int id;
+        volatile Product state;
+
+        Entry(Product state) {
+            this.id = state.getId();
+            this.state = state;
+        }
+    }
+
+    private static class SnapshotRun {
+        final Map<Integer, Product> preserved = new ConcurrentHashMap<>();
+
+        Product claim(int id, Product state) {
+            Product existing = preserved.putIfAbsent(id, state);
+            return existing == null ? state : existing;
+        }
+    }
+
+    // Согласованное состояние склада на один момент времени
+    public static class StockSnapshot {
+        private final List<Product> products;
+        private final long totalQuantity;
+
+        StockSnapshot(List<Product> products, long totalQuantity) {
+            this.products = products;
+            this.totalQuantity = totalQuantity;
+        }
+
+        // Товары, упорядоченные по id
+        public List<Product> getProducts() { return products; }
+        public long getTotalQuantity() { return totalQuantity; }
+    }
+
+    private final Map<Integer, Entry> products = new ConcurrentHashMap<>();
+    private final Map<String, Entry> nameBrandIndex = new ConcurrentHashMap<>();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPE_COUNT];
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final LongAdder totalQuantity = new LongAdder();
+    // Снимки снимаются по одному; писатели эту блокировку не берут
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    private final StampedLock publishLock = new StampedLock();
+    private volatile SnapshotRun snapshotRun;
+    private volatile IntConsumer quantityListener;
+
+    private final LongAdder addOperations = new LongAdder();
+    private final LongAdder updateOperations = new LongAdder();
+    private final LongAdder deleteOperations = new LongAdder();
+    private final LongAdder movementOperations = new LongAdder();
+
+    public ConcurrentInventory() {
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    // Вызывается в потоке писателя после каждого примененного движения остатка
+    public void setQuantityListener(IntConsumer listener) {
+        this.quantityListener = listener;
+    }
+
+    public Product addProduct(String name, String brand, double price, int quantity, int averageQuantity) {
+        if (price < 0 || quantity < 0 || averageQuantity < 0) {
+            return null;
+        }
+        Product product = insert(nextId.getAndIncrement(), name, brand, price, quantity, averageQuantity);
+        if (product != null) {
+            addOperations.increment();
+        }
+        return product;
+    }
+
+    // Товар с уже выданным id, например из Inventory. Счетчик операций не меняется
+    public boolean load(Product product) {
+        nextId.accumulateAndGet(product.getId() + 1, Math::max);
+        if (products.containsKey(product.getId())) {
+            return false;
+        }
+        return insert(product.getId(), product.getName(), product.getBrand(), product.getPrice(),
+                product.getQuantity(), product.getAverageQuantity()) != null;
+    }
+
+    public boolean updateProduct(int id, String newName, String newBrand,
+                                 double newPrice, int newQuantity, int newAverageQuantity) {
+        if (newPrice < 0 || newQuantity < 0 || newAverageQuantity < 0) {
+            return false;
+        }
+        Entry entry = products.get(id);
+        if (entry == null) {
+            return false;
+        }
+        String newKey = SearchIndex.keyOf(newName, newBrand);
+        while (true) {
+            Product current = entry.state;
+            if (current == null) {
+                return false;
+            }
+            String oldKey = SearchIndex.keyOf(current.getName(), current.getBrand());
+            ReentrantLock first = stripeFor(oldKey);
+            ReentrantLock second = stripeFor(newKey);
+            if (stripeIndex(oldKey) > stripeIndex(newKey)) {
+                ReentrantLock swap = first;
+                first = second;
+                second = swap;
+            }
+            first.lock();
+            second.lock();
+            try {
+                if (nameBrandIndex.get(oldKey) != entry) {
+                    if (entry.state == null) {
+                        return false;
+                    }
+                    continue; // Товар успели переименовать - повторяем с новым ключом
+                }
+                Entry existing = nameBrandIndex.get(newKey);
+                if (existing != null && existing != entry) {
+                    return false;
+                }
+                // Остаток задается целиком, как в Inventory: движение, успевшее раньше, перезаписывается
+                Product updated = new Product(id, newName, newBrand, newPrice, newQuantity, newAverageQuantity);
+                Product old = replace(entry, updated);
+                if (old == null) {
+                    return false;
+                }
+                if (!oldKey.equals(newKey)) {
+                    nameBrandIndex.remove(oldKey);
+                    nameBrandIndex.put(newKey, entry);
+                }
+                totalQuantity.add(newQuantity - old.getQuantity());
+                updateOperations.increment();
+                return true;
+            } finally {
+                second.unlock();
+                first.unlock();
+            }
+        }
+    }
+
+    public boolean removeProduct(int id) {
+        Entry entry = products.get(id);
+        if (entry == null) {
+            return false;
+        }
+        while (true) {
+            Product current = entry.state;
+            if (current == null) {
+                return false;
+            }
+            String key = SearchIndex.keyOf(current.getName(), current.getBrand());
+            ReentrantLock lock = stripeFor(key);
+            lock.lock();
+            try {
+                if (nameBrandIndex.get(key) != entry) {
+                    continue;
+                }
+                Product old = replace(entry, null);
+                if (old == null) {
+                    return false;
+                }
+                products.remove(id);
+                nameBrandIndex.remove(key);
+                totalQuantity.add(-old.getQuantity());
+                deleteOperations.increment();
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    public void clear() {
+        for (Integer id : products.keySet()) {
+            removeProduct(id);
+        }
+    }
+
+    // Изменяет остаток на delta без блокировок. Остаток не может стать
+    // отрицательным: такая операция отклоняется целиком.
+    public boolean adjustQuantity(int id, int delta) {
+        Entry entry = products.get(id);
+        if (entry == null) {
+            return false;
+        }
+        while (true) {
+            Product current = entry.state;
+            if (current == null) {
+                return false;
+            }
+            long next = (long) current.getQuantity() + delta;
+            if (next < 0 || next > Integer.MAX_VALUE) {
+                return false;
+            }
+            Product updated = new Product(id, current.getName(), current.getBrand(), current.getPrice(),
+                    (int) next, current.getAverageQuantity());
+            if (swap(entry, current, updated)) {
+                totalQuantity.add(delta);
+                movementOperations.increment();
+                IntConsumer listener = quantityListener;
+                if (listener != null) {
+                    listener.accept(id);
+                }
+                return true;
+            }
+        }
+    }
+
+    // Текущее состояние товара; объект не меняется, его можно читать из любого потока
+    public Product findProductById(int id) {
+        Entry entry = products.get(id);
+        return entry == null ? null : entry.state;
+    }
+
+    public Product findProductByNameAndBrand(String name, String brand) {
+        Entry entry = nameBrandIndex.get(SearchIndex.keyOf(name, brand));
+        return entry == null ? null : entry.state;
+    }
+
+    public int getQuantity(int id) {
+        Product product = findProductById(id);
+        return product == null ? -1 : product.getQuantity();
+    }
+
+    public int size() { return products.size(); }
+    public long getTotalQuantity() { return totalQuantity.sum(); }
+    public long getAddOperations() { return addOperations.sum(); }
+    public long getUpdateOperations() { return updateOperations.sum(); }
+    public long getDeleteOperations() { return deleteOperations.sum(); }
+    public long getMovementOperations() { return movementOperations.sum(); }
+
+    public StockSnapshot snapshot() {
+        snapshotLock.lock();
+        try {
+            SnapshotRun run = new SnapshotRun();
+            setSnapshotRun(run);
+            Map<Integer, Product> copy = new HashMap<>(products.size() * 4 / 3 + 1);
+            try {
+                for (Entry entry : products.values()) {
+                    Product state = entry.state;
+                    Product claimed = run.claim(entry.id, state == null ? ABSENT : state);
+                    if (claimed != ABSENT) {
+                        copy.put(entry.id, claimed);
+                    }
+                }
+            } finally {
+                setSnapshotRun(null);
+            }
+            // Товары, удаленные после начала снимка до того, как обход до них дошел
+            run.preserved.forEach((id, state) -> {
+                if (state != ABSENT) {
+                    copy.putIfAbsent(id, state);
+                }
+            });
+
+            List<Product> list = new ArrayList<>(copy.values());
+            list.sort(Comparator.comparingInt(Product::getId));
+            long quantity = 0;
+            for (Product product : list) {
+                quantity += product.getQuantity();
+            }
+            return new StockSnapshot(list, quantity);
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    private Product insert(int id, String name, String brand, double price, int quantity, int averageQuantity) {
+        String key = SearchIndex.keyOf(name, brand);
+        ReentrantLock lock = stripeFor(key);
+        lock.lock();
+        try {
+            if (nameBrandIndex.containsKey(key)) {
+                return null;
+            }
+            Product product = new Product(id, name, brand, price, quantity, averageQuantity);
+            Entry entry = new Entry(product);
+            long stamp = publishLock.readLock();
+            try {
+                SnapshotRun run = snapshotRun;
+                if (run != null) {
+                    run.claim(id, ABSENT);
+                }
+                products.put(id, entry);
+            } finally {
+                publishLock.unlockRead(stamp);
+            }
+            nameBrandIndex.put(key, entry);
+            totalQuantity.add(quantity);
+            return product;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Заменяет состояние товара, пока он не удален; возвращает прежнее или null
+    private Product replace(Entry entry, Product updated) {
+        while (true) {
+            Product current = entry.state;
+            if (current == null) {
+                return null;
+            }
+            if (swap(entry, current, updated)) {
+                return current;
+            }
+        }
+    }
+
+    // CAS состояния. Если идет снимок, он должен увидеть состояние до этой
+    // замены; публикация SnapshotRun не может попасть между проверкой и CAS
+    private boolean swap(Entry entry, Product current, Product updated) {
+        long stamp = publishLock.readLock();
+        try {
+            SnapshotRun run = snapshotRun;
+            if (run != null) {
+                run.claim(entry.id, current);
+            }
+            return STATE.compareAndSet(entry, current, updated);
+        } finally {
+            publishLock.unlockRead(stamp);
+        }
+    }
+
+    // Ждет, пока писатели закончат начатые замены
+    private void setSnapshotRun(SnapshotRun run) {
+        long stamp = publishLock.writeLock();
+        try {
+            snapshotRun = run;
+        } finally {
+            publishLock.unlockWrite(stamp);
+        }
+    }
+
+    private ReentrantLock stripeFor(String key) {
+        return stripes[stripeIndex(key)];
+    }
+
+    private static int stripeIndex(String key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (STRIPE_COUNT - 1);
+    }
+}
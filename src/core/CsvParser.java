@@ -0,0 +1,381 @@
+package core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+// Разбор CSV с товарами: файл отображается в память, делится на части по
+// границам строк, части разбираются параллельно прямо из байтов и
+// склеиваются в порядке следования в файле.
+public class CsvParser {
+
+    public static class Result {
+        private final List<Product> products;
+        private final int errorCount;
+
+        Result(List<Product> products, int errorCount) {
+            this.products = products;
+            this.errorCount = errorCount;
+        }
+
+        public List<Product> getProducts() { return products; }
+        public int getErrorCount() { return errorCount; }
+    }
+
+    public interface ProgressListener {
+        void onProgress(long rows, long bytesDone, long totalBytes);
+    }
+
+    private static final int FIELD_COUNT = 6;
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+    private static final long MAX_CHUNK_SIZE = 1 << 30;
+    private static final long STREAM_CHUNK_SIZE = 64 << 20;
+    private static final int CANCEL_CHECK_INTERVAL = 4096;
+    private static final long PROGRESS_POLL_MILLIS = 100;
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final ForkJoinPool pool;
+
+    public CsvParser() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public CsvParser(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    // Возвращает null, если разбор был отменен
+    public Result parse(Path path, BooleanSupplier cancelled, ProgressListener progress) throws IOException {
+        if (CsvWriter.isCompressed(path)) {
+            return parseCompressed(path, cancelled, progress);
+        }
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long dataStart = nextLineStart(channel, 0, size); // Пропускаем заголовок
+            List<long[]> chunks = splitIntoChunks(channel, dataStart, size);
+
+            AtomicLong rowsDone = new AtomicLong();
+            AtomicLong bytesDone = new AtomicLong();
+            List<Future<ChunkResult>> futures = new ArrayList<>(chunks.size());
+            for (long[] chunk : chunks) {
+                futures.add(pool.submit(() -> {
+                    ChunkResult result = new ChunkResult();
+                    result.errorCount = parseChunk(channel, chunk[0], chunk[1], cancelled, rowsDone, bytesDone,
+                            result.products::add);
+                    return result;
+                }));
+            }
+
+            List<Product> products = new ArrayList<>();
+            int errorCount = 0;
+            try {
+                for (Future<ChunkResult> future : futures) {
+                    ChunkResult chunkResult = awaitChunk(future, cancelled, progress, rowsDone, bytesDone, size);
+                    if (chunkResult == null) {
+                        return null;
+                    }
+                    products.addAll(chunkResult.products);
+                    errorCount += chunkResult.errorCount;
+                }
+            } finally {
+                for (Future<ChunkResult> future : futures) {
+                    future.cancel(false);
+                }
+            }
+
+            progress.onProgress(rowsDone.get(), size, size);
+            Metrics.CSV_LOAD.recordSince(start, rowsDone.get(), size);
+            return new Result(products, errorCount);
+        }
+    }
+
+    // Сжатая копия распаковывается во временный файл, чтобы разбирать его так же
+    private Result parseCompressed(Path path, BooleanSupplier cancelled, ProgressListener progress) throws IOException {
+        Path plain = decompress(path);
+        try {
+            return parse(plain, cancelled, progress);
+        } finally {
+            Files.deleteIfExists(plain);
+        }
+    }
+
+    private static Path decompress(Path path) throws IOException {
+        Path plain = Files.createTempFile("inventory-", ".csv");
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(path), 1 << 16)) {
+            Files.copy(in, plain, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(plain);
+            throw e;
+        }
+        return plain;
+    }
+
+    // Последовательный разбор без накопления товаров: каждая строка сразу
+    // передается получателю, так что размер файла не ограничен памятью.
+    // Возвращает число строк с ошибками или -1, если разбор был отменен.
+    public int stream(Path path, BooleanSupplier cancelled, ProgressListener progress,
+                      Consumer<Product> rows) throws IOException {
+        if (CsvWriter.isCompressed(path)) {
+            Path plain = decompress(path);
+            try {
+                return stream(plain, cancelled, progress, rows);
+            } finally {
+                Files.deleteIfExists(plain);
+            }
+        }
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            AtomicLong rowsDone = new AtomicLong();
+            AtomicLong bytesDone = new AtomicLong();
+            int errorCount = 0;
+            long chunkStart = nextLineStart(channel, 0, size);
+            while (chunkStart < size) {
+                long chunkEnd = chunkStart + STREAM_CHUNK_SIZE >= size
+                        ? size : nextLineStart(channel, chunkStart + STREAM_CHUNK_SIZE, size);
+                errorCount += parseChunk(channel, chunkStart, chunkEnd, cancelled, rowsDone, bytesDone, rows);
+                if (cancelled.getAsBoolean()) {
+                    return -1;
+                }
+                progress.onProgress(rowsDone.get(), chunkEnd, size);
+                chunkStart = chunkEnd;
+            }
+            Metrics.CSV_LOAD.recordSince(start, rowsDone.get(), size);
+            return errorCount;
+        }
+    }
+
+    private ChunkResult awaitChunk(Future<ChunkResult> future, BooleanSupplier cancelled, ProgressListener progress,
+                                   AtomicLong rowsDone, AtomicLong bytesDone, long size) throws IOException {
+        while (true) {
+            if (cancelled.getAsBoolean()) {
+                return null;
+            }
+            try {
+                return future.get(PROGRESS_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                progress.onProgress(rowsDone.get(), bytesDone.get(), size);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            }
+        }
+    }
+
+    private List<long[]> splitIntoChunks(FileChannel channel, long start, long end) throws IOException {
+        long length = end - start;
+        int parallelism = Math.max(pool.getParallelism(), 1);
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, (length + parallelism * 4L - 1) / (parallelism * 4L));
+        chunkSize = Math.min(chunkSize, MAX_CHUNK_SIZE);
+
+        List<long[]> chunks = new ArrayList<>();
+        long chunkStart = start;
+        while (chunkStart < end) {
+            long chunkEnd = chunkStart + chunkSize >= end ? end : nextLineStart(channel, chunkStart + chunkSize, end);
+            chunks.add(new long[]{chunkStart, chunkEnd});
+            chunkStart = chunkEnd;
+        }
+        return chunks;
+    }
+
+    // Позиция сразу после ближайшего перевода строки, начиная с from
+    private static long nextLineStart(FileChannel channel, long from, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long position = from;
+        while (position < end) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return end;
+    }
+
+    private static class ChunkResult {
+        private final List<Product> products = new ArrayList<>();
+        private int errorCount;
+    }
+
+    // Возвращает число строк с ошибками
+    private static int parseChunk(FileChannel channel, long start, long end, BooleanSupplier cancelled,
+                                  AtomicLong rowsDone, AtomicLong bytesDone, Consumer<Product> rows) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        int errorCount = 0;
+        byte[] line = new byte[256];
+        int[] fieldStarts = new int[FIELD_COUNT];
+        int[] fieldEnds = new int[FIELD_COUNT];
+
+        int limit = buffer.limit();
+        int lineStart = 0;
+        int reportedBytes = 0;
+        int lineCount = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int next = lineEnd + 1;
+            if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+
+            int length = lineEnd - lineStart;
+            if (length > line.length) {
+                line = new byte[Math.max(length, line.length * 2)];
+            }
+            buffer.get(lineStart, line, 0, length);
+            if (!parseLine(line, length, fieldStarts, fieldEnds, rows)) {
+                errorCount++;
+            }
+
+            lineStart = next;
+            if (++lineCount % CANCEL_CHECK_INTERVAL == 0) {
+                rowsDone.addAndGet(CANCEL_CHECK_INTERVAL);
+                bytesDone.addAndGet(lineStart - reportedBytes);
+                reportedBytes = lineStart;
+                if (cancelled.getAsBoolean()) {
+                    return errorCount;
+                }
+            }
+        }
+        rowsDone.addAndGet(lineCount % CANCEL_CHECK_INTERVAL);
+        bytesDone.addAndGet(limit - reportedBytes);
+        return errorCount;
+    }
+
+    private static boolean parseLine(byte[] line, int length, int[] fieldStarts, int[] fieldEnds, Consumer<Product> rows) {
+        int fields = 0;
+        int fieldStart = 0;
+        for (int i = 0; i <= length && fields < FIELD_COUNT; i++) {
+            if (i == length || line[i] == ',') {
+                fieldStarts[fields] = fieldStart;
+                fieldEnds[fields] = i;
+                fields++;
+                fieldStart = i + 1;
+            }
+        }
+        for (int i = 0; i < fields; i++) {
+            while (fieldStarts[i] < fieldEnds[i] && (line[fieldStarts[i]] & 0xFF) <= ' ') {
+                fieldStarts[i]++;
+            }
+            while (fieldEnds[i] > fieldStarts[i] && (line[fieldEnds[i] - 1] & 0xFF) <= ' ') {
+                fieldEnds[i]--;
+            }
+        }
+
+        if (fields < FIELD_COUNT) {
+            Metrics.error("Неверный формат строки: " + decode(line, 0, length));
+            return false;
+        }
+
+        try {
+            int id = parseInt(line, fieldStarts[0], fieldEnds[0]);
+            String name = decode(line, fieldStarts[1], fieldEnds[1]);
+            String brand = decode(line, fieldStarts[2], fieldEnds[2]);
+            double price = parseDouble(line, fieldStarts[3], fieldEnds[3]);
+            int quantity = parseInt(line, fieldStarts[4], fieldEnds[4]);
+            int avgQuantity = parseInt(line, fieldStarts[5], fieldEnds[5]);
+
+            rows.accept(new Product(id, name, brand, price, quantity, avgQuantity));
+            return true;
+        } catch (NumberFormatException e) {
+            Metrics.error("Ошибка преобразования числа в строке: " + decode(line, 0, length));
+            return false;
+        }
+    }
+
+    private static String decode(byte[] bytes, int from, int to) {
+        return new String(bytes, from, to - from, StandardCharsets.UTF_8);
+    }
+
+    static int parseInt(byte[] bytes, int from, int to) {
+        if (from >= to) {
+            throw new NumberFormatException("пустое число");
+        }
+        boolean negative = bytes[from] == '-';
+        int i = bytes[from] == '-' || bytes[from] == '+' ? from + 1 : from;
+        if (i == to) {
+            throw new NumberFormatException(decode(bytes, from, to));
+        }
+
+        long value = 0;
+        for (; i < to; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException(decode(bytes, from, to));
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw new NumberFormatException(decode(bytes, from, to));
+            }
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw new NumberFormatException(decode(bytes, from, to));
+        }
+        return (int) value;
+    }
+
+    // Быстрый путь для обычной записи вида 123.45; экспоненты и прочие
+    // формы разбираются через Double.parseDouble
+    static double parseDouble(byte[] bytes, int from, int to) {
+        boolean negative = from < to && bytes[from] == '-';
+        int i = from < to && (bytes[from] == '-' || bytes[from] == '+') ? from + 1 : from;
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean seenPoint = false;
+        for (; i < to; i++) {
+            byte b = bytes[i];
+            if (b == '.' && !seenPoint) {
+                seenPoint = true;
+            } else if (b >= '0' && b <= '9' && digits < 15) {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (seenPoint) {
+                    fractionDigits++;
+                }
+            } else {
+                break;
+            }
+        }
+
+        if (i < to || digits == 0 || fractionDigits >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(decode(bytes, from, to));
+        }
+        double value = mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+}
@@ -0,0 +1,247 @@
+package core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.BooleanSupplier;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+// Запись товаров в CSV. Строки собираются прямо в байтовом буфере: числа
+// переводятся в цифры без Formatter, строки кодируются в UTF-8 на месте,
+// а полный буфер уходит в файл одной записью. Данные пишутся во временный
+// файл, который после fsync атомарно заменяет целевой. Файл с окончанием
+// .gz сжимается на лету.
+public class CsvWriter {
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int CHECK_INTERVAL = 4096;
+
+    private static final byte[] HEADER = "ID,Name,Brand,Price,Quantity,AverageQuantity".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    public interface ProgressListener {
+        void onProgress(long rows, long totalRows);
+    }
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final byte[] bytes = buffer.array();
+    private int position;
+    private FileChannel channel;
+    private GZIPOutputStream gzip;
+
+    public static boolean isCompressed(Path path) {
+        return path.getFileName().toString().endsWith(".gz");
+    }
+
+    // Возвращает число записанных строк или -1, если запись была отменена
+    public int write(Path path, List<Product> products, BooleanSupplier cancelled,
+                     ProgressListener progress) throws IOException {
+        long start = System.nanoTime();
+        Path tempFile = path.resolveSibling(path.getFileName() + ".tmp");
+
+        int rowCount = 0;
+        boolean cancelledWrite = false;
+        try (FileChannel fileChannel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel = fileChannel;
+            gzip = isCompressed(path) ? openGzip(fileChannel) : null;
+            position = 0;
+
+            putBytes(HEADER);
+            putBytes(LINE_SEPARATOR);
+            for (Product product : products) {
+                if (rowCount % CHECK_INTERVAL == 0) {
+                    if (cancelled.getAsBoolean()) {
+                        cancelledWrite = true;
+                        break;
+                    }
+                    progress.onProgress(rowCount, products.size());
+                }
+                putRow(product);
+                rowCount++;
+            }
+
+            flushBuffer();
+            if (gzip != null) {
+                gzip.finish(); // Хвост gzip без закрытия канала: его еще нужно сбросить на диск
+            }
+            if (!cancelledWrite) {
+                fileChannel.force(true);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        } finally {
+            channel = null;
+            gzip = null;
+        }
+
+        if (cancelledWrite) {
+            Files.deleteIfExists(tempFile);
+            return -1;
+        }
+
+        long size = Files.size(tempFile);
+        try {
+            Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        progress.onProgress(rowCount, products.size());
+        Metrics.CSV_SAVE.recordSince(start, rowCount, size);
+        return rowCount;
+    }
+
+    // Быстрое сжатие: ночная копия в несколько раз меньше CSV, а запись
+    // упирается в сжатие, а не в диск
+    private static GZIPOutputStream openGzip(FileChannel fileChannel) throws IOException {
+        return new GZIPOutputStream(Channels.newOutputStream(fileChannel), BUFFER_SIZE) {
+            {
+                def.setLevel(Deflater.BEST_SPEED);
+            }
+        };
+    }
+
+    private void putRow(Product product) throws IOException {
+        putInt(product.getId());
+        putByte(',');
+        putString(product.getName());
+        putByte(',');
+        putString(product.getBrand());
+        putByte(',');
+        putPrice(product.getPrice());
+        putByte(',');
+        putInt(product.getQuantity());
+        putByte(',');
+        putInt(product.getAverageQuantity());
+        putBytes(LINE_SEPARATOR);
+    }
+
+    // Как String.format("%.2f") с отброшенным ".00"
+    private void putPrice(double price) throws IOException {
+        long cents = Prices.toCents(price);
+        if (cents == Long.MIN_VALUE) {
+            String formatted = String.format(Locale.US, "%.2f", price);
+            putAscii(formatted.endsWith(".00") ? formatted.substring(0, formatted.length() - 3) : formatted);
+            return;
+        }
+        if (cents < 0) {
+            putByte('-');
+            cents = -cents;
+        }
+        putLong(cents / 100);
+        int fraction = (int) (cents % 100);
+        if (fraction != 0) {
+            ensure(3);
+            bytes[position++] = '.';
+            bytes[position++] = (byte) ('0' + fraction / 10);
+            bytes[position++] = (byte) ('0' + fraction % 10);
+        }
+    }
+
+    private void putInt(int value) throws IOException {
+        putLong(value);
+    }
+
+    private void putLong(long value) throws IOException {
+        ensure(20);
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                putAscii(Long.toString(value));
+                return;
+            }
+            bytes[position++] = '-';
+            value = -value;
+        }
+        int digits = digitCount(value);
+        int end = position + digits;
+        for (int i = end - 1; i >= position; i--) {
+            bytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position = end;
+    }
+
+    private static int digitCount(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+
+    // UTF-8 без промежуточного массива; ASCII - по байту на символ
+    private void putString(String text) throws IOException {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (position + 4 > bytes.length) {
+                flushBuffer();
+            }
+            if (c < 0x80) {
+                bytes[position++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[position++] = (byte) (0xC0 | (c >> 6));
+                bytes[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                bytes[position++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                bytes[position++] = '?'; // Одиночный суррогат, как у кодировщика UTF-8
+            } else {
+                bytes[position++] = (byte) (0xE0 | (c >> 12));
+                bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private void putAscii(String text) throws IOException {
+        putBytes(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private void putByte(char c) throws IOException {
+        ensure(1);
+        bytes[position++] = (byte) c;
+    }
+
+    private void putBytes(byte[] data) throws IOException {
+        ensure(data.length);
+        System.arraycopy(data, 0, bytes, position, data.length);
+        position += data.length;
+    }
+
+    private void ensure(int needed) throws IOException {
+        if (position + needed > bytes.length) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position == 0) {
+            return;
+        }
+        if (gzip != null) {
+            gzip.write(bytes, 0, position);
+        } else {
+            buffer.clear().limit(position);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        position = 0;
+    }
+}
@@ -0,0 +1,16 @@
+package core;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// Каталог локальных данных приложения в домашней папке пользователя
+public final class DataDirectory {
+    private static final String DIRECTORY_NAME = ".inventory-management";
+
+    private DataDirectory() {
+    }
+
+    public static Path resolve(String fileName) {
+        return Paths.get(System.getProperty("user.home"), DIRECTORY_NAME, fileName);
+    }
+}
@@ -0,0 +1,111 @@
+package core;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.List;
+
+// Запись журнала изменений: время, операция, товар и измененные поля
+public class HistoryEvent {
+
+    public enum Operation { CREATE, UPDATE, DELETE, IMPORT, RECEIVE, SHIP }
+
+    public static class FieldChange {
+        private final String field;
+        private final String oldValue;
+        private final String newValue;
+
+        public FieldChange(String field, Object oldValue, Object newValue) {
+            this.field = field;
+            this.oldValue = String.valueOf(oldValue);
+            this.newValue = String.valueOf(newValue);
+        }
+
+        public String getField() { return field; }
+        public String getOldValue() { return oldValue; }
+        public String getNewValue() { return newValue; }
+
+        @Override
+        public String toString() {
+            return field + ": " + oldValue + " -> " + newValue;
+        }
+    }
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final long timestamp;
+    private final Operation operation;
+    private final int productId;
+    private final String productName;
+    private final List<FieldChange> changes;
+    private final String note;
+
+    public HistoryEvent(long timestamp, Operation operation, int productId, String productName,
+                        List<FieldChange> changes, String note) {
+        this.timestamp = timestamp;
+        this.operation = operation;
+        this.productId = productId;
+        this.productName = productName;
+        this.changes = changes == null ? Collections.emptyList() : changes;
+        this.note = note;
+    }
+
+    public static HistoryEvent of(Operation operation, Product product) {
+        return new HistoryEvent(System.currentTimeMillis(), operation, product.getId(), product.getName(), null, null);
+    }
+
+    public long getTimestamp() { return timestamp; }
+    public Operation getOperation() { return operation; }
+    public int getProductId() { return productId; }
+    public String getProductName() { return productName; }
+    public List<FieldChange> getChanges() { return changes; }
+    public String getNote() { return note; }
+
+    // Строка в прежнем формате истории, со временем "ЧЧ:мм"
+    public String format() {
+        return format(TIME_FORMAT);
+    }
+
+    // Полная дата нужна в файле, куда вытесняются старые записи
+    public String formatWithDate() {
+        return format(DATE_TIME_FORMAT);
+    }
+
+    private String format(DateTimeFormatter formatter) {
+        String time = LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault()).format(formatter);
+        switch (operation) {
+            case CREATE:
+                return time + " создан товар: " + productName;
+            case UPDATE:
+                return withChanges(time + " изменен товар " + productName + ": ");
+            case RECEIVE:
+                return withChanges(time + " приход товара " + productName + ": ");
+            case SHIP:
+                return withChanges(time + " расход товара " + productName + ": ");
+            case DELETE:
+                return time + " удален товар: " + productName;
+            case IMPORT:
+            default:
+                return time + " " + note;
+        }
+    }
+
+    private String withChanges(String prefix) {
+        StringBuilder text = new StringBuilder(prefix);
+        for (int i = 0; i < changes.size(); i++) {
+            if (i > 0) {
+                text.append(", ");
+            }
+            text.append(changes.get(i));
+        }
+        return text.toString();
+    }
+
+    @Override
+    public String toString() {
+        return format();
+    }
+}
@@ -0,0 +1,541 @@
+package core;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+// Ядро склада без зависимостей от JavaFX: товары, индексы уникальности,
+// поиск, статистика, история и журнал. Подписчики получают изменения
+// через Listener; JavaFX-представление (InventoryModel) - один из них.
+// Не потокобезопасно: все изменения выполняются из одного потока.
+public class Inventory {
+    private static final int PARALLEL_IMPORT_THRESHOLD = 10_000;
+
+    public interface Listener {
+        void onAdded(List<Product> added);
+        // Изменения полей; движения одной пачки приходят одним вызовом
+        void onUpdated(List<Product> updated);
+        void onRemoved(Product product);
+        // Весь список заменен, например при загрузке файла или очистке
+        void onReplaced(List<Product> products);
+    }
+
+    private final List<Product> products;
+    private final List<Listener> listeners = new ArrayList<>();
+    private Map<String, Product> nameBrandIndex;
+    private Map<Integer, Product> idIndex;
+    private final SearchIndex searchIndex;
+    private final InventoryStatistics statistics;
+    private final StockWatchlist watchlist;
+    private int nextId = 1;
+
+    private final ChangeHistory changeHistory;
+
+    private int addOperations = 0;
+    private int updateOperations = 0;
+    private int deleteOperations = 0;
+    private int movementOperations = 0;
+
+    private Journal journal;
+    private boolean replaying;
+
+    public Inventory() {
+        this.products = new ArrayList<>();
+        this.nameBrandIndex = new HashMap<>();
+        this.idIndex = new HashMap<>();
+        this.searchIndex = new SearchIndex();
+        this.statistics = new InventoryStatistics();
+        this.watchlist = new StockWatchlist();
+        this.changeHistory = new ChangeHistory();
+    }
+
+    public boolean addProduct(String name, String brand, double price, int quantity, int averageQuantity) {
+        long start = System.nanoTime();
+        if (!isNameBrandUnique(name, brand)) {
+            return false;
+        }
+
+        if (price < 0 || quantity < 0 || averageQuantity < 0) {
+            return false;
+        }
+
+        Product product = new Product(nextId++, name, brand, price, quantity, averageQuantity);
+        String key = nameBrandKey(name, brand);
+        searchIndex.add(product, key);
+        nameBrandIndex.put(key, product);
+        idIndex.put(product.getId(), product);
+        statistics.add(product);
+        watchlist.add(product);
+        products.add(product);
+        for (Listener listener : listeners) {
+            listener.onAdded(Collections.singletonList(product));
+        }
+
+        if (journal != null) {
+            journal.logAdd(product);
+        }
+        addOperations++;
+        if (!replaying) {
+            changeHistory.append(HistoryEvent.of(HistoryEvent.Operation.CREATE, product));
+            Metrics.ADD.recordSince(start);
+        }
+        return true;
+    }
+
+    public boolean updateProduct(Product oldProduct, String newName, String newBrand,
+                                 double newPrice, int newQuantity, int newAverageQuantity) {
+        long start = System.nanoTime();
+        if (!isNameBrandUnique(newName, newBrand, oldProduct)) {
+            return false;
+        }
+
+        if (newPrice < 0 || newQuantity < 0 || newAverageQuantity < 0) {
+            return false;
+        }
+
+        List<HistoryEvent.FieldChange> changes = new ArrayList<>();
+
+        if (!oldProduct.getName().equals(newName)) {
+            changes.add(new HistoryEvent.FieldChange("имя", oldProduct.getName(), newName));
+        }
+        if (!oldProduct.getBrand().equals(newBrand)) {
+            changes.add(new HistoryEvent.FieldChange("бренд", oldProduct.getBrand(), newBrand));
+        }
+        if (oldProduct.getPrice() != newPrice) {
+            changes.add(new HistoryEvent.FieldChange("цена", oldProduct.getPrice(), newPrice));
+        }
+        if (oldProduct.getQuantity() != newQuantity) {
+            changes.add(new HistoryEvent.FieldChange("количество", oldProduct.getQuantity(), newQuantity));
+        }
+        if (oldProduct.getAverageQuantity() != newAverageQuantity) {
+            changes.add(new HistoryEvent.FieldChange("СрКол", oldProduct.getAverageQuantity(), newAverageQuantity));
+        }
+
+        String oldKey = nameBrandKey(oldProduct.getName(), oldProduct.getBrand());
+
+        statistics.remove(oldProduct);
+        StockLevel oldLevel = oldProduct.getStockLevel();
+        oldProduct.setName(newName);
+        oldProduct.setBrand(newBrand);
+        oldProduct.setPrice(newPrice);
+        oldProduct.setQuantity(newQuantity);
+        oldProduct.setAverageQuantity(newAverageQuantity);
+
+        nameBrandIndex.remove(oldKey);
+        nameBrandIndex.put(nameBrandKey(newName, newBrand), oldProduct);
+        searchIndex.update(oldProduct);
+        statistics.add(oldProduct);
+        watchlist.update(oldProduct, oldLevel);
+        for (Listener listener : listeners) {
+            listener.onUpdated(Collections.singletonList(oldProduct));
+        }
+
+        if (journal != null) {
+            journal.logUpdate(oldProduct);
+        }
+        updateOperations++;
+        if (!replaying) {
+            changeHistory.append(new HistoryEvent(System.currentTimeMillis(), HistoryEvent.Operation.UPDATE,
+                    oldProduct.getId(), oldProduct.getName(), changes, null));
+            Metrics.UPDATE.recordSince(start);
+        }
+        return true;
+    }
+
+
+    public boolean removeProduct(Product product) {
+        long start = System.nanoTime();
+        int index = indexOf(product);
+        boolean removed = index >= 0;
+        if (removed) {
+            products.remove(index);
+            nameBrandIndex.remove(nameBrandKey(product.getName(), product.getBrand()));
+            idIndex.remove(product.getId());
+            searchIndex.remove(product);
+            statistics.remove(product);
+            watchlist.remove(product);
+            for (Listener listener : listeners) {
+                listener.onRemoved(product);
+            }
+
+            if (journal != null) {
+                journal.logRemove(product);
+            }
+            deleteOperations++;
+            if (!replaying) {
+                changeHistory.append(HistoryEvent.of(HistoryEvent.Operation.DELETE, product));
+                Metrics.REMOVE.recordSince(start);
+            }
+        }
+        return removed;
+    }
+
+
+    public boolean receive(int productId, int quantity) {
+        return applyMovements(Collections.singletonList(StockMovement.receive(productId, quantity))).isEmpty();
+    }
+
+    public boolean ship(int productId, int quantity) {
+        return applyMovements(Collections.singletonList(StockMovement.ship(productId, quantity))).isEmpty();
+    }
+
+    // Применяет движения остатков по порядку. Меняется только количество;
+    // движение к неизвестному товару, с неположительным количеством или
+    // уводящее остаток ниже нуля отклоняется, остальные применяются.
+    // Подписчики и история получают по одному уведомлению на пачку.
+    // Возвращает отклоненные движения.
+    public List<StockMovement> applyMovements(List<StockMovement> movements) {
+        long start = System.nanoTime();
+        List<StockMovement> rejected = new ArrayList<>();
+        List<StockMovement> accepted = new ArrayList<>(movements.size());
+        List<HistoryEvent> events = new ArrayList<>(movements.size());
+        // Уровень запаса каждого товара до пачки: список к заказу получает
+        // только итоговые переходы через пороги
+        Map<Product, StockLevel> changed = new IdentityHashMap<>();
+        long now = System.currentTimeMillis();
+
+        for (StockMovement movement : movements) {
+            Product product = idIndex.get(movement.getProductId());
+            if (product == null || movement.getQuantity() <= 0) {
+                rejected.add(movement);
+                continue;
+            }
+            int oldQuantity = product.getQuantity();
+            long newQuantity = (long) oldQuantity + movement.getDelta();
+            if (newQuantity < 0 || newQuantity > Integer.MAX_VALUE) {
+                rejected.add(movement);
+                continue;
+            }
+
+            changed.putIfAbsent(product, product.getStockLevel());
+            product.setQuantity((int) newQuantity);
+            statistics.changeQuantity(product, oldQuantity);
+
+            events.add(new HistoryEvent(now,
+                    movement.isReceipt() ? HistoryEvent.Operation.RECEIVE : HistoryEvent.Operation.SHIP,
+                    product.getId(), product.getName(),
+                    Collections.singletonList(new HistoryEvent.FieldChange("количество", oldQuantity, newQuantity)),
+                    null));
+            accepted.add(movement);
+            movementOperations++;
+        }
+
+        if (!changed.isEmpty()) {
+            // Список к заказу обновляется первым: слушатели уже видят его
+            // согласованным с новыми остатками
+            changed.forEach(watchlist::update);
+            List<Product> updated = new ArrayList<>(changed.keySet());
+            for (Listener listener : listeners) {
+                listener.onUpdated(updated);
+            }
+            if (journal != null) {
+                journal.logMovements(accepted);
+            }
+        }
+        if (!replaying) {
+            changeHistory.appendAll(events);
+            Metrics.MOVEMENTS.recordSince(start);
+        }
+        return rejected;
+    }
+
+    public Product findProductByName(String name) {
+        return products.stream()
+                .filter(p -> p.getName().equalsIgnoreCase(name))
+                .findFirst()
+                .orElse(null);
+    }
+
+    public Product findProductById(int id) {
+        return idIndex.get(id);
+    }
+
+
+    public void clearProducts() {
+        products.clear();
+        nameBrandIndex.clear();
+        idIndex.clear();
+        searchIndex.clear();
+        statistics.clear();
+        watchlist.reset(Collections.emptyList());
+        for (Listener listener : listeners) {
+            listener.onReplaced(Collections.emptyList());
+        }
+
+        if (journal != null) {
+            journal.logClear();
+        }
+    }
+
+    // Журнал, в который дописываются все изменения товаров; null отключает запись
+    public void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    int getNextId() { return nextId; }
+    public int getAddOperations() { return addOperations; }
+    public int getUpdateOperations() { return updateOperations; }
+    public int getDeleteOperations() { return deleteOperations; }
+    public int getMovementOperations() { return movementOperations; }
+
+    // Восстанавливает состояние из снимка: товары, счетчики и историю
+    void restore(List<Product> products, int nextId, int addOperations, int updateOperations,
+                 int deleteOperations, int movementOperations, List<HistoryEvent> events) {
+        replaying = true;
+        try {
+            importProducts(products, true);
+        } finally {
+            replaying = false;
+        }
+        this.nextId = Math.max(this.nextId, nextId);
+        this.addOperations = addOperations;
+        this.updateOperations = updateOperations;
+        this.deleteOperations = deleteOperations;
+        this.movementOperations = movementOperations;
+        for (HistoryEvent event : events) {
+            changeHistory.append(event);
+        }
+    }
+
+    // Во время воспроизведения журнала история не ведется (endReplay добавляет
+    // одну итоговую запись), а счетчики операций считаются как обычно:
+    // снимок хранит их на момент записи, журнал дополняет операциями после него
+    void beginReplay() {
+        replaying = true;
+    }
+
+    void endReplay(int records) {
+        replaying = false;
+        if (records > 0) {
+            changeHistory.append(new HistoryEvent(System.currentTimeMillis(), HistoryEvent.Operation.IMPORT,
+                    0, null, null, "восстановлено из журнала записей: " + records));
+        }
+    }
+
+
+    private boolean isNameBrandUnique(String name, String brand) {
+        return !nameBrandIndex.containsKey(nameBrandKey(name, brand));
+    }
+
+    private boolean isNameBrandUnique(String name, String brand, Product excludeProduct) {
+        Product existing = nameBrandIndex.get(nameBrandKey(name, brand));
+        return existing == null || existing == excludeProduct;
+    }
+
+    // Ключ индекса уникальности: имя и бренд без учета регистра
+    private static String nameBrandKey(String name, String brand) {
+        return SearchIndex.keyOf(name, brand);
+    }
+
+    private int indexOf(Product product) {
+        for (int i = 0; i < products.size(); i++) {
+            if (products.get(i) == product) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public void addListener(Listener listener) { listeners.add(listener); }
+    public void removeListener(Listener listener) { listeners.remove(listener); }
+
+    // Товары в порядке добавления, только для чтения
+    public List<Product> getProducts() { return Collections.unmodifiableList(products); }
+    public int size() { return products.size(); }
+    public String getChangeHistory() { return changeHistory.toString(); }
+    public ChangeHistory getHistory() { return changeHistory; }
+    public StockWatchlist getWatchlist() { return watchlist; }
+    // Числовые значения статистики; getStatistics() готовит строки для интерфейса
+    public InventoryStatistics getInventoryStatistics() { return statistics; }
+
+    // Выборка без JavaFX: товары, подходящие под фильтр, в заданном порядке
+    public List<Product> select(Predicate<Product> filter, Comparator<Product> order) {
+        List<Product> selected = new ArrayList<>();
+        for (Product product : products) {
+            if (filter == null || filter.test(product)) {
+                selected.add(product);
+            }
+        }
+        if (order != null) {
+            selected.sort(order);
+        }
+        return selected;
+    }
+
+    // Предикат поиска подстроки в имени или бренде через триграммный индекс.
+    // null снимает поиск.
+    public Predicate<Product> searchMatcher(String searchText) {
+        if (searchText == null) {
+            searchIndex.clearMatcher();
+            return null;
+        }
+        return searchIndex.matcher(searchText);
+    }
+
+    // Может вызываться из фонового потока; результат применяется через searchMatcher
+    public SearchIndex.Result prepareSearch(String searchText) {
+        return searchIndex.prepare(searchText);
+    }
+
+    // Поиск до limit совпадений, например для HTTP API; в FilterModule такой результат не передается
+    public SearchIndex.Result prepareSearch(String searchText, int limit) {
+        return searchIndex.prepare(searchText, limit);
+    }
+
+    public Predicate<Product> searchMatcher(SearchIndex.Result result) {
+        return searchIndex.matcher(result);
+    }
+
+    // Строит списки триграмм в вызывающем потоке; обычно их строит фоновый поток при первом поиске
+    public void buildSearchIndex() {
+        searchIndex.buildPostings();
+    }
+
+
+    public Map<String, Object> getStatistics() {
+        long start = System.nanoTime();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("totalProducts", statistics.getProductCount());
+
+        int uniqueNames = statistics.getUniqueNameCount();
+        stats.put("uniqueNames", uniqueNames);
+
+        double avgProductsPerName = statistics.getProductCount() / (double) Math.max(uniqueNames, 1);
+        stats.put("avgProductsPerName", String.format("%.2f", avgProductsPerName));
+
+        stats.put("totalStockValue", String.format("%.2f", statistics.getTotalStockValue()));
+        stats.put("avgStockValue", String.format("%.2f", statistics.getAverageStockValue()));
+        stats.put("lowStockCount", statistics.getLowStockCount());
+        stats.put("zeroStockCount", statistics.getZeroStockCount());
+
+        stats.put("addOperations", addOperations);
+        stats.put("updateOperations", updateOperations);
+        stats.put("deleteOperations", deleteOperations);
+        stats.put("movementOperations", movementOperations);
+
+        Metrics.STATISTICS.recordSince(start);
+        return stats;
+    }
+
+
+    public boolean loadProductFromFile(int id, String name, String brand, double price, int quantity, int averageQuantity) {
+        if (!isNameBrandUnique(name, brand) || idIndex.containsKey(id)) {
+            return false;
+        }
+
+        if (price < 0 || quantity < 0 || averageQuantity < 0) {
+            return false;
+        }
+
+        if (id >= nextId) {
+            nextId = id + 1;
+        }
+
+        Product product = new Product(id, name, brand, price, quantity, averageQuantity);
+        String key = nameBrandKey(name, brand);
+        searchIndex.add(product, key);
+        nameBrandIndex.put(key, product);
+        idIndex.put(id, product);
+        statistics.add(product);
+        watchlist.add(product);
+        products.add(product);
+        for (Listener listener : listeners) {
+            listener.onAdded(Collections.singletonList(product));
+        }
+
+        if (journal != null) {
+            journal.logAdd(product);
+        }
+        addOperations++;
+        if (!replaying) {
+            changeHistory.append(HistoryEvent.of(HistoryEvent.Operation.CREATE, product));
+        }
+        return true;
+    }
+
+    // Пакетная загрузка: проверяет все строки, собирает товары отдельно
+    // и публикует их в списке одним изменением. Возвращает отклоненные товары.
+    public List<Product> importProducts(List<Product> products, boolean replaceExisting) {
+        long start = System.nanoTime();
+        int expectedSize = (replaceExisting ? 0 : this.products.size()) + products.size();
+        Map<String, Product> batchIndex = new HashMap<>(expectedSize * 4 / 3 + 1);
+        Map<Integer, Product> batchIds = new HashMap<>(expectedSize * 4 / 3 + 1);
+        if (!replaceExisting) {
+            batchIndex.putAll(nameBrandIndex);
+            batchIds.putAll(idIndex);
+        }
+        List<Product> accepted = new ArrayList<>(products.size());
+        List<String> acceptedKeys = new ArrayList<>(products.size());
+        List<Product> rejected = new ArrayList<>();
+        int maxId = nextId - 1;
+
+        // Ключи в нижнем регистре - самая дорогая часть проверки, на больших пачках считаем их параллельно
+        String[] keys = new String[products.size()];
+        IntStream range = IntStream.range(0, keys.length);
+        (keys.length >= PARALLEL_IMPORT_THRESHOLD ? range.parallel() : range).forEach(i ->
+                keys[i] = nameBrandKey(products.get(i).getName(), products.get(i).getBrand()));
+
+        for (int i = 0; i < keys.length; i++) {
+            Product product = products.get(i);
+            String key = keys[i];
+            if (product.getPrice() < 0 || product.getQuantity() < 0 || product.getAverageQuantity() < 0
+                    || batchIds.containsKey(product.getId())) {
+                rejected.add(product);
+                continue;
+            }
+            if (batchIndex.putIfAbsent(key, product) != null) {
+                rejected.add(product);
+                continue;
+            }
+            batchIds.put(product.getId(), product);
+            accepted.add(product);
+            acceptedKeys.add(key);
+            maxId = Math.max(maxId, product.getId());
+        }
+
+        nextId = maxId + 1;
+        nameBrandIndex = batchIndex;
+        idIndex = batchIds;
+        if (replaceExisting) {
+            searchIndex.clear();
+            statistics.clear();
+        }
+        for (int i = 0; i < accepted.size(); i++) {
+            searchIndex.add(accepted.get(i), acceptedKeys.get(i));
+            statistics.add(accepted.get(i));
+        }
+        if (replaceExisting) {
+            this.products.clear();
+            this.products.addAll(accepted);
+            watchlist.reset(accepted);
+            for (Listener listener : listeners) {
+                listener.onReplaced(getProducts());
+            }
+        } else {
+            this.products.addAll(accepted);
+            for (Product product : accepted) {
+                watchlist.add(product);
+            }
+            for (Listener listener : listeners) {
+                listener.onAdded(Collections.unmodifiableList(accepted));
+            }
+        }
+
+        if (journal != null) {
+            journal.logImport(accepted, replaceExisting);
+        }
+        addOperations += accepted.size();
+        if (replaying) {
+            return rejected;
+        }
+
+        String summary = "загружено товаров: " + accepted.size();
+        if (!rejected.isEmpty()) {
+            summary += ", отклонено: " + rejected.size();
+        }
+        changeHistory.append(new HistoryEvent(System.currentTimeMillis(), HistoryEvent.Operation.IMPORT,
+                0, null, null, summary));
+        Metrics.IMPORT.recordSince(start);
+        return rejected;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,69 @@
+package core;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Агрегаты склада, которые обновляются при каждом добавлении, изменении,
+// удалении товара и движении остатка, так что чтение статистики не требует обхода списка.
+// Стоимость запасов считается в копейках, чтобы вычитание при удалении
+// не накапливало ошибку округления.
+public class InventoryStatistics {
+    private final Map<String, Integer> nameCounts = new HashMap<>();
+    private int productCount;
+    private long stockValueCents;
+    private int lowStockCount;
+    private int zeroStockCount;
+
+    public void add(Product product) {
+        apply(product.getName(), product.getPrice(), product.getQuantity(), product.getAverageQuantity(), 1);
+    }
+
+    public void remove(Product product) {
+        apply(product.getName(), product.getPrice(), product.getQuantity(), product.getAverageQuantity(), -1);
+    }
+
+    // Движение остатка: имя и цена не меняются, поэтому пересчитываются
+    // только стоимость и уровни запаса
+    public void changeQuantity(Product product, int oldQuantity) {
+        int newQuantity = product.getQuantity();
+        stockValueCents += Math.round(product.getPrice() * 100) * (long) (newQuantity - oldQuantity);
+        countLevel(StockLevel.of(oldQuantity, product.getAverageQuantity()), -1);
+        countLevel(StockLevel.of(newQuantity, product.getAverageQuantity()), 1);
+    }
+
+    public void clear() {
+        nameCounts.clear();
+        productCount = 0;
+        stockValueCents = 0;
+        lowStockCount = 0;
+        zeroStockCount = 0;
+    }
+
+    private void apply(String name, double price, int quantity, int averageQuantity, int sign) {
+        productCount += sign;
+        if (sign > 0) {
+            nameCounts.merge(name, 1, Integer::sum);
+        } else {
+            nameCounts.computeIfPresent(name, (key, count) -> count == 1 ? null : count - 1);
+        }
+
+        stockValueCents += sign * Math.round(price * 100) * quantity;
+
+        countLevel(StockLevel.of(quantity, averageQuantity), sign);
+    }
+
+    private void countLevel(StockLevel level, int sign) {
+        if (level == StockLevel.ZERO) {
+            zeroStockCount += sign;
+        } else if (level == StockLevel.LOW) {
+            lowStockCount += sign;
+        }
+    }
+
+    public int getProductCount() { return productCount; }
+    public int getUniqueNameCount() { return nameCounts.size(); }
+    public double getTotalStockValue() { return stockValueCents / 100.0; }
+    public double getAverageStockValue() { return productCount == 0 ? 0 : stockValueCents / 100.0 / productCount; }
+    public int getLowStockCount() { return lowStockCount; }
+    public int getZeroStockCount() { return zeroStockCount; }
+}
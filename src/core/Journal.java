@@ -0,0 +1,434 @@
+package core;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// Журнал изменений для автосохранения. Каждое добавление, изменение и
+// удаление товара дописывается в конец файла отдельной записью:
+// длина, CRC32 и данные. Пакетная загрузка и пачка движений остатков
+// пишутся одной записью каждая. Записи копятся в памяти и сбрасываются
+// на диск фоновым потоком пачками (групповая фиксация): fsync выполняется раз в
+// commitIntervalMillis или по накоплении maxBatchRecords записей, поэтому
+// серия быстрых правок не ждет диска на каждой операции.
+//
+// При запуске replay() воспроизводит журнал в модели. Недописанная или
+// поврежденная запись в конце файла (сбой во время записи) отбрасывается.
+// Файл начинается с номера эпохи снимка, поверх которого записаны
+// изменения; журнал другой эпохи уже учтен в снимке и не применяется.
+public class Journal implements Closeable {
+    public static final long DEFAULT_COMMIT_INTERVAL_MILLIS = 50;
+    public static final int DEFAULT_MAX_BATCH_RECORDS = 1000;
+
+    private static final byte OP_ADD = 1;
+    private static final byte OP_UPDATE = 2;
+    private static final byte OP_REMOVE = 3;
+    private static final byte OP_CLEAR = 4;
+    private static final byte OP_IMPORT = 5;
+    private static final byte OP_MOVEMENTS = 6;
+
+    private static final int FILE_HEADER_SIZE = 8;
+    private static final int HEADER_SIZE = 8;
+    // Запись загрузки содержит все товары файла, поэтому предел большой;
+    // он лишь отсекает мусорную длину в поврежденном хвосте
+    private static final int MAX_RECORD_SIZE = 1 << 30;
+    private static final int MAX_RETAINED_BUFFER = 1 << 20;
+
+    private final FileChannel channel;
+    private final long commitIntervalNanos;
+    private final int maxBatchRecords;
+    private final Thread writer;
+
+    private final Object lock = new Object();
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(128);
+    private final DataOutputStream record = new DataOutputStream(recordBytes);
+    private final CRC32 crc = new CRC32();
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream(64 * 1024);
+    private ByteArrayOutputStream writing = new ByteArrayOutputStream(64 * 1024);
+    private int pendingRecords;
+    private long appendedRecords;
+    private long committedRecords;
+    private boolean closing;
+    private boolean failed;
+
+    public Journal(Path file, long epoch) throws IOException {
+        this(file, epoch, DEFAULT_COMMIT_INTERVAL_MILLIS, DEFAULT_MAX_BATCH_RECORDS);
+    }
+
+    // Журнал другой эпохи начинается заново
+    public Journal(Path file, long epoch, long commitIntervalMillis, int maxBatchRecords) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (readEpoch(channel) != epoch) {
+            channel.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).putLong(epoch).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(false);
+        }
+        this.channel.position(channel.size());
+        this.commitIntervalNanos = TimeUnit.MILLISECONDS.toNanos(commitIntervalMillis);
+        this.maxBatchRecords = maxBatchRecords;
+        this.writer = Thread.ofPlatform().name("inventory-journal").daemon().start(this::runWriter);
+    }
+
+    public void logAdd(Product product) {
+        logProduct(OP_ADD, product);
+    }
+
+    public void logUpdate(Product product) {
+        logProduct(OP_UPDATE, product);
+    }
+
+    public void logRemove(Product product) {
+        synchronized (lock) {
+            try {
+                startRecord(OP_REMOVE);
+                record.writeInt(product.getId());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            finishRecord();
+        }
+    }
+
+    public void logClear() {
+        synchronized (lock) {
+            startRecord(OP_CLEAR);
+            finishRecord();
+        }
+    }
+
+    // Загрузка из файла: одна запись вместо очистки и добавления по товару.
+    // Запись собирается вне блокировки, чтобы не задерживать другие операции
+    public void logImport(List<Product> products, boolean replaceExisting) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + products.size() * 48);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(OP_IMPORT);
+            out.writeBoolean(replaceExisting);
+            out.writeInt(products.size());
+            for (Product product : products) {
+                writeProduct(out, product);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        synchronized (lock) {
+            if (bytes.size() > MAX_RECORD_SIZE) {
+                Metrics.error("Загрузка слишком велика для журнала, автосохранение отключено");
+                failed = true;
+                lock.notifyAll();
+                return;
+            }
+            appendRecord(bytes.toByteArray());
+        }
+    }
+
+    // Примененные движения остатков. При воспроизведении они применяются
+    // к тому же состоянию заново, поэтому дают тот же результат
+    public void logMovements(List<StockMovement> movements) {
+        synchronized (lock) {
+            try {
+                startRecord(OP_MOVEMENTS);
+                record.writeInt(movements.size());
+                for (StockMovement movement : movements) {
+                    record.writeInt(movement.getProductId());
+                    record.writeInt(movement.getDelta());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            finishRecord();
+        }
+    }
+
+    // Ждет, пока все записанные до вызова операции окажутся на диске
+    public boolean flush() {
+        synchronized (lock) {
+            long target = appendedRecords;
+            while (committedRecords < target && !failed) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return !failed;
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closing = true;
+            lock.notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            Metrics.error("Ошибка при закрытии журнала: " + e.getMessage());
+        }
+    }
+
+    private void logProduct(byte op, Product product) {
+        synchronized (lock) {
+            try {
+                startRecord(op);
+                writeProduct(record, product);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            finishRecord();
+        }
+    }
+
+    private void startRecord(byte op) {
+        recordBytes.reset();
+        recordBytes.write(op);
+    }
+
+    private void finishRecord() {
+        appendRecord(recordBytes.toByteArray());
+    }
+
+    private void appendRecord(byte[] data) {
+        if (closing || failed) {
+            return;
+        }
+        crc.reset();
+        crc.update(data);
+        writeInt(pending, data.length);
+        writeInt(pending, (int) crc.getValue());
+        pending.writeBytes(data);
+
+        appendedRecords++;
+        // Первая запись пачки запускает отсчет интервала, полная пачка - немедленный сброс
+        if (++pendingRecords == 1 || pendingRecords >= maxBatchRecords) {
+            lock.notifyAll();
+        }
+    }
+
+    private void runWriter() {
+        while (true) {
+            long batchEnd;
+            synchronized (lock) {
+                try {
+                    while (pendingRecords == 0 && !closing) {
+                        lock.wait();
+                    }
+                    long deadline = System.nanoTime() + commitIntervalNanos;
+                    long remaining;
+                    while (pendingRecords < maxBatchRecords && !closing
+                            && (remaining = deadline - System.nanoTime()) > 0) {
+                        TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                    }
+                } catch (InterruptedException e) {
+                    closing = true;
+                }
+                if (pendingRecords == 0) {
+                    return;
+                }
+                ByteArrayOutputStream batch = pending;
+                pending = writing;
+                writing = batch;
+                pendingRecords = 0;
+                batchEnd = appendedRecords;
+            }
+
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(writing.toByteArray());
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                Metrics.error("Не удалось записать журнал, автосохранение отключено: " + e.getMessage());
+                synchronized (lock) {
+                    failed = true;
+                    lock.notifyAll();
+                }
+                return;
+            }
+
+            synchronized (lock) {
+                // После записи загрузки буфер размером с весь файл не держим
+                if (writing.size() > MAX_RETAINED_BUFFER) {
+                    writing = new ByteArrayOutputStream(64 * 1024);
+                } else {
+                    writing.reset();
+                }
+                committedRecords = batchEnd;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    // Восстанавливает модель из журнала, записанного поверх снимка эпохи epoch.
+    // Возвращает число примененных записей.
+    public static int replay(Path file, Inventory inventory, long epoch) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (readEpoch(channel) != epoch) {
+                return 0;
+            }
+        }
+
+        int applied = 0;
+        long validLength = FILE_HEADER_SIZE;
+        List<Product> added = new ArrayList<>();
+        CRC32 crc = new CRC32();
+        inventory.beginReplay();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+            in.skipNBytes(FILE_HEADER_SIZE);
+            byte[] data = new byte[256];
+            while (true) {
+                int length;
+                int checksum;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt();
+                    if (length <= 0 || length > MAX_RECORD_SIZE) {
+                        break;
+                    }
+                    if (length > data.length) {
+                        data = new byte[Math.max(length, data.length * 2)];
+                    }
+                    in.readFully(data, 0, length);
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(data, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+
+                DataInputStream fields = new DataInputStream(new ByteArrayInputStream(data, 0, length));
+                byte op = fields.readByte();
+                // Подряд идущие добавления применяются одной пачкой
+                if (op != OP_ADD && !added.isEmpty()) {
+                    inventory.importProducts(added, false);
+                    added.clear();
+                }
+                switch (op) {
+                    case OP_ADD:
+                        added.add(readProduct(fields));
+                        break;
+                    case OP_UPDATE: {
+                        Product state = readProduct(fields);
+                        Product product = inventory.findProductById(state.getId());
+                        if (product != null) {
+                            inventory.updateProduct(product, state.getName(), state.getBrand(),
+                                    state.getPrice(), state.getQuantity(), state.getAverageQuantity());
+                        }
+                        break;
+                    }
+                    case OP_REMOVE: {
+                        Product product = inventory.findProductById(fields.readInt());
+                        if (product != null) {
+                            inventory.removeProduct(product);
+                        }
+                        break;
+                    }
+                    case OP_CLEAR:
+                        inventory.clearProducts();
+                        break;
+                    case OP_IMPORT: {
+                        boolean replaceExisting = fields.readBoolean();
+                        int count = fields.readInt();
+                        List<Product> products = new ArrayList<>(count);
+                        for (int i = 0; i < count; i++) {
+                            products.add(readProduct(fields));
+                        }
+                        inventory.importProducts(products, replaceExisting);
+                        break;
+                    }
+                    case OP_MOVEMENTS: {
+                        int count = fields.readInt();
+                        List<StockMovement> movements = new ArrayList<>(count);
+                        for (int i = 0; i < count; i++) {
+                            int productId = fields.readInt();
+                            int delta = fields.readInt();
+                            movements.add(delta > 0 ? StockMovement.receive(productId, delta)
+                                    : StockMovement.ship(productId, -delta));
+                        }
+                        inventory.applyMovements(movements);
+                        break;
+                    }
+                    default:
+                        Metrics.error("Неизвестная запись журнала: " + op);
+                }
+                applied++;
+                validLength += HEADER_SIZE + length;
+            }
+            if (!added.isEmpty()) {
+                inventory.importProducts(added, false);
+            }
+        } finally {
+            inventory.endReplay(applied);
+        }
+
+        // Отрезаем недописанный хвост, чтобы новые записи шли сразу за целыми
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            if (channel.size() > validLength) {
+                Metrics.error("Журнал поврежден после " + applied + " записей, хвост отброшен");
+                channel.truncate(validLength);
+            }
+        }
+        return applied;
+    }
+
+    // Эпоха из заголовка файла; -1, если заголовка нет
+    private static long readEpoch(FileChannel channel) throws IOException {
+        if (channel.size() < FILE_HEADER_SIZE) {
+            return -1;
+        }
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+        }
+        return header.flip().getLong();
+    }
+
+    private static void writeProduct(DataOutputStream out, Product product) throws IOException {
+        out.writeInt(product.getId());
+        out.writeUTF(product.getName());
+        out.writeUTF(product.getBrand());
+        out.writeDouble(product.getPrice());
+        out.writeInt(product.getQuantity());
+        out.writeInt(product.getAverageQuantity());
+    }
+
+    private static Product readProduct(DataInputStream in) throws IOException {
+        int id = in.readInt();
+        String name = in.readUTF();
+        String brand = in.readUTF();
+        double price = in.readDouble();
+        int quantity = in.readInt();
+        int averageQuantity = in.readInt();
+        return new Product(id, name, brand, price, quantity, averageQuantity);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+}
@@ -0,0 +1,179 @@
+package core;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+// Замеры горячих путей приложения для вкладки диагностики. Запись -
+// атомарные счетчики без блокировок, поэтому замеры включены всегда.
+public final class Metrics {
+    private static final int RECENT_ERROR_LIMIT = 50;
+
+    // Объем и длительность переноса данных (загрузка и сохранение CSV)
+    public static class Transfer {
+        private final LatencyHistogram histogram;
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private volatile double lastRowsPerSecond;
+        private volatile double lastBytesPerSecond;
+
+        Transfer(String name) {
+            this.histogram = new LatencyHistogram(name);
+        }
+
+        public void recordSince(long startNanos, long rowCount, long byteCount) {
+            long nanos = Math.max(System.nanoTime() - startNanos, 1);
+            histogram.record(nanos);
+            rows.add(rowCount);
+            bytes.add(byteCount);
+            lastRowsPerSecond = rowCount * 1e9 / nanos;
+            lastBytesPerSecond = byteCount * 1e9 / nanos;
+        }
+
+        public LatencyHistogram getHistogram() { return histogram; }
+        public String getName() { return histogram.getName(); }
+        public long getRows() { return rows.sum(); }
+        public long getBytes() { return bytes.sum(); }
+        public double getLastRowsPerSecond() { return lastRowsPerSecond; }
+        public double getLastBytesPerSecond() { return lastBytesPerSecond; }
+
+        public double getRowsPerSecond() {
+            long nanos = histogram.getTotalNanos();
+            return nanos == 0 ? 0 : rows.sum() * 1e9 / nanos;
+        }
+
+        public double getBytesPerSecond() {
+            long nanos = histogram.getTotalNanos();
+            return nanos == 0 ? 0 : bytes.sum() * 1e9 / nanos;
+        }
+
+        void reset() {
+            histogram.reset();
+            rows.reset();
+            bytes.reset();
+            lastRowsPerSecond = 0;
+            lastBytesPerSecond = 0;
+        }
+    }
+
+    public static final LatencyHistogram ADD = new LatencyHistogram("Добавление товара");
+    public static final LatencyHistogram UPDATE = new LatencyHistogram("Изменение товара");
+    public static final LatencyHistogram REMOVE = new LatencyHistogram("Удаление товара");
+    public static final LatencyHistogram MOVEMENTS = new LatencyHistogram("Пачка движений");
+    public static final LatencyHistogram IMPORT = new LatencyHistogram("Импорт товаров");
+    public static final LatencyHistogram FILTER = new LatencyHistogram("Фильтрация");
+    public static final LatencyHistogram SORT = new LatencyHistogram("Сортировка");
+    public static final LatencyHistogram STATISTICS = new LatencyHistogram("Статистика");
+    public static final LatencyHistogram CATALOG_QUERY = new LatencyHistogram("Запрос к каталогу");
+    public static final LatencyHistogram CATALOG_PAGE = new LatencyHistogram("Чтение страницы каталога");
+    public static final LatencyHistogram FX_PULSE = new LatencyHistogram("Пульс JavaFX: CSS и раскладка");
+    public static final LatencyHistogram FX_DELAY = new LatencyHistogram("Задержка потока JavaFX");
+    public static final LatencyHistogram FX_FRAME = new LatencyHistogram("Интервал кадров");
+
+    public static final Transfer CSV_LOAD = new Transfer("Загрузка CSV");
+    public static final Transfer CSV_SAVE = new Transfer("Сохранение CSV");
+
+    private static final List<LatencyHistogram> HISTOGRAMS = List.of(
+            ADD, UPDATE, REMOVE, MOVEMENTS, IMPORT, FILTER, SORT, STATISTICS, CATALOG_QUERY, CATALOG_PAGE,
+            CSV_LOAD.getHistogram(), CSV_SAVE.getHistogram(), FX_PULSE, FX_DELAY, FX_FRAME);
+    private static final List<Transfer> TRANSFERS = List.of(CSV_LOAD, CSV_SAVE);
+
+    private static final LongAdder errorCount = new LongAdder();
+    private static final Deque<String> recentErrors = new ArrayDeque<>();
+
+    private Metrics() {
+    }
+
+    public static List<LatencyHistogram> getHistograms() { return HISTOGRAMS; }
+    public static List<Transfer> getTransfers() { return TRANSFERS; }
+    public static long getErrorCount() { return errorCount.sum(); }
+
+    // Сообщение об ошибке: в System.err, как раньше, и в список последних ошибок
+    public static void error(String message) {
+        System.err.println(message);
+        errorCount.increment();
+        String entry = LocalDateTime.now().format(DateTimeFormatter.ofPattern("HH:mm:ss")) + " " + message;
+        synchronized (recentErrors) {
+            if (recentErrors.size() == RECENT_ERROR_LIMIT) {
+                recentErrors.removeFirst();
+            }
+            recentErrors.addLast(entry);
+        }
+    }
+
+    public static List<String> getRecentErrors() {
+        synchronized (recentErrors) {
+            return new ArrayList<>(recentErrors);
+        }
+    }
+
+    public static void reset() {
+        for (LatencyHistogram histogram : HISTOGRAMS) {
+            histogram.reset();
+        }
+        for (Transfer transfer : TRANSFERS) {
+            transfer.reset();
+        }
+        errorCount.reset();
+        synchronized (recentErrors) {
+            recentErrors.clear();
+        }
+    }
+
+    public static String formatNanos(long nanos) {
+        if (nanos < 1_000) {
+            return nanos + " нс";
+        }
+        if (nanos < 1_000_000) {
+            return String.format(Locale.US, "%.1f мкс", nanos / 1e3);
+        }
+        if (nanos < 1_000_000_000) {
+            return String.format(Locale.US, "%.1f мс", nanos / 1e6);
+        }
+        return String.format(Locale.US, "%.2f с", nanos / 1e9);
+    }
+
+    // Текстовый отчет для выгрузки в файл
+    public static String report() {
+        StringBuilder report = new StringBuilder();
+        report.append("Диагностика ")
+                .append(LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")))
+                .append("\n\n");
+
+        report.append(String.format("%-32s %10s %12s %12s %12s %12s %12s%n",
+                "Операция", "Вызовов", "Среднее", "p50", "p90", "p99", "Макс"));
+        for (LatencyHistogram histogram : HISTOGRAMS) {
+            report.append(String.format("%-32s %10d %12s %12s %12s %12s %12s%n",
+                    histogram.getName(),
+                    histogram.getCount(),
+                    formatNanos(histogram.getMeanNanos()),
+                    formatNanos(histogram.getPercentileNanos(50)),
+                    formatNanos(histogram.getPercentileNanos(90)),
+                    formatNanos(histogram.getPercentileNanos(99)),
+                    formatNanos(histogram.getMaxNanos())));
+        }
+
+        report.append('\n');
+        for (Transfer transfer : TRANSFERS) {
+            report.append(transfer.getName()).append(": ").append(formatTransfer(transfer)).append('\n');
+        }
+
+        report.append("\nОшибок: ").append(getErrorCount()).append('\n');
+        for (String error : getRecentErrors()) {
+            report.append("  ").append(error).append('\n');
+        }
+        return report.toString();
+    }
+
+    public static String formatTransfer(Transfer transfer) {
+        return String.format(Locale.US, "строк %d, %.1f МБ; в среднем %.0f строк/с, %.1f МБ/с; последняя %.0f строк/с, %.1f МБ/с",
+                transfer.getRows(), transfer.getBytes() / 1e6,
+                transfer.getRowsPerSecond(), transfer.getBytesPerSecond() / 1e6,
+                transfer.getLastRowsPerSecond(), transfer.getLastBytesPerSecond() / 1e6);
+    }
+}
@@ -0,0 +1,29 @@
+package core;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Округление цены до копеек так же, как String.format("%.2f"): половина
+// округляется вверх по кратчайшей десятичной записи числа
+public final class Prices {
+    // Цены выше этой границы не помещаются в long копеек без потери точности
+    private static final double MAX_FAST_PRICE = 1e13;
+
+    private Prices() {
+    }
+
+    // Long.MIN_VALUE - число не переводится в копейки (NaN, бесконечность, слишком большое)
+    public static long toCents(double price) {
+        if (Double.isNaN(price) || Double.isInfinite(price) || Math.abs(price) >= MAX_FAST_PRICE) {
+            return Long.MIN_VALUE;
+        }
+        double scaled = price * 100;
+        double fraction = Math.abs(scaled - Math.rint(scaled));
+        // Вблизи половины копейки округление решает десятичная запись числа,
+        // а произведение могло отойти от нее на пару единиц последнего разряда
+        if (Math.abs(fraction - 0.5) <= Math.ulp(scaled) * 8) {
+            return new BigDecimal(Double.toString(price)).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue();
+        }
+        return Math.round(scaled);
+    }
+}
@@ -0,0 +1,70 @@
+package core;
+
+import java.text.CollationKey;
+
+
+// Товар с обычными полями, без зависимостей от JavaFX. Таблица получает
+// значения через фабрики ячеек в MainView, а об изменениях узнает из
+// событий списка товаров.
+public class Product {
+    private int id;
+    private String name;
+    private String brand;
+    private double price;
+    private int quantity;
+    private int averageQuantity;
+    // Пересчитывается при изменении остатка или среднего количества, чтобы
+    // строка таблицы не вычисляла уровень заново при каждой перерисовке.
+    private StockLevel stockLevel;
+
+    // Служебные поля SearchIndex: ключ поиска, позиция в индексе и пометка совпадения
+    String searchKey;
+    int searchSlot;
+    int searchMark;
+
+    // Служебные поля ProductOrder: ключи сортировки имени и бренда
+    CollationKey nameSortKey;
+    CollationKey brandSortKey;
+
+    public Product(int id, String name, String brand, double price, int quantity, int averageQuantity) {
+        this.id = id;
+        this.name = name;
+        this.brand = brand;
+        this.price = price;
+        this.quantity = quantity;
+        this.averageQuantity = averageQuantity;
+        this.stockLevel = StockLevel.of(quantity, averageQuantity);
+    }
+
+    public int getId() { return id; }
+    public void setId(int id) { this.id = id; }
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public String getBrand() { return brand; }
+    public void setBrand(String brand) { this.brand = brand; }
+
+    public double getPrice() { return price; }
+    public void setPrice(double price) { this.price = price; }
+
+    public int getQuantity() { return quantity; }
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+        stockLevel = StockLevel.of(quantity, averageQuantity);
+    }
+
+    public int getAverageQuantity() { return averageQuantity; }
+    public void setAverageQuantity(int averageQuantity) {
+        this.averageQuantity = averageQuantity;
+        stockLevel = StockLevel.of(quantity, averageQuantity);
+    }
+
+    public StockLevel getStockLevel() { return stockLevel; }
+
+    @Override
+    public String toString() {
+        return String.format("Product{id=%d, name='%s', brand='%s', price=%.2f, quantity=%d, avgQuantity=%d}",
+                getId(), getName(), getBrand(), getPrice(), getQuantity(), getAverageQuantity());
+    }
+}
@@ -0,0 +1,29 @@
+package core;
+
+import java.util.function.Predicate;
+
+// Условия отбора товаров: минимальный остаток, скрытие нулевых остатков
+// и предикат поиска. Все активные условия собираются в один предикат.
+public final class ProductFilter {
+
+    private ProductFilter() {
+    }
+
+    // null, если ни одно условие не активно
+    public static Predicate<Product> of(int minQuantity, boolean showZeroQuantity, Predicate<Product> search) {
+        boolean hideZero = !showZeroQuantity;
+        boolean quantityActive = minQuantity > 0 || hideZero;
+
+        if (!quantityActive) {
+            return search;
+        }
+        if (search == null) {
+            return product -> matchesQuantity(product.getQuantity(), minQuantity, hideZero);
+        }
+        return product -> matchesQuantity(product.getQuantity(), minQuantity, hideZero) && search.test(product);
+    }
+
+    private static boolean matchesQuantity(int quantity, int min, boolean hideZero) {
+        return quantity >= min && (!hideZero || quantity > 0);
+    }
+}
@@ -0,0 +1,125 @@
+package core;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+// Порядок товаров по одному или нескольким столбцам. Числовые столбцы
+// сравниваются без упаковки значений, строковые - по CollationKey,
+// которые вычисляются один раз на товар и пересчитываются только
+// после изменения имени или бренда.
+public class ProductOrder {
+
+    public enum Column { ID, NAME, BRAND, PRICE, QUANTITY }
+
+    public static class SortKey {
+        private final Column column;
+        private final boolean descending;
+
+        public SortKey(Column column, boolean descending) {
+            this.column = column;
+            this.descending = descending;
+        }
+
+        public static SortKey ascending(Column column) { return new SortKey(column, false); }
+        public static SortKey descending(Column column) { return new SortKey(column, true); }
+
+        public Column getColumn() { return column; }
+        public boolean isDescending() { return descending; }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof SortKey other && column == other.column && descending == other.descending;
+        }
+
+        @Override
+        public int hashCode() {
+            return column.hashCode() * 31 + Boolean.hashCode(descending);
+        }
+    }
+
+    private final Collator collator;
+
+    public ProductOrder() {
+        this.collator = Collator.getInstance();
+    }
+
+    public Comparator<Product> comparator(SortKey... keys) {
+        return comparator(Arrays.asList(keys));
+    }
+
+    // Порядок устойчивый: при равенстве всех ключей товары сравниваются по ID
+    public Comparator<Product> comparator(List<SortKey> keys) {
+        List<SortKey> effectiveKeys = new ArrayList<>(keys);
+        if (effectiveKeys.isEmpty() || effectiveKeys.get(effectiveKeys.size() - 1).getColumn() != Column.ID) {
+            effectiveKeys.add(SortKey.ascending(Column.ID));
+        }
+
+        Comparator<Product> comparator = null;
+        for (SortKey key : effectiveKeys) {
+            Comparator<Product> next = comparatorFor(key.getColumn());
+            if (key.isDescending()) {
+                next = next.reversed();
+            }
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        return comparator;
+    }
+
+    // Ключи вычисляются заранее, чтобы сама сортировка только сравнивала их
+    public void prepareKeys(List<SortKey> keys, Collection<? extends Product> products) {
+        for (SortKey key : keys) {
+            Column column = key.getColumn();
+            if (column != Column.NAME && column != Column.BRAND) {
+                continue;
+            }
+            for (Product product : products) {
+                if (column == Column.NAME) {
+                    nameKey(product);
+                } else {
+                    brandKey(product);
+                }
+            }
+        }
+    }
+
+    private Comparator<Product> comparatorFor(Column column) {
+        switch (column) {
+            case NAME:
+                return (a, b) -> nameKey(a).compareTo(nameKey(b));
+            case BRAND:
+                return (a, b) -> brandKey(a).compareTo(brandKey(b));
+            case PRICE:
+                return Comparator.comparingDouble(Product::getPrice);
+            case QUANTITY:
+                return Comparator.comparingInt(Product::getQuantity);
+            case ID:
+            default:
+                return Comparator.comparingInt(Product::getId);
+        }
+    }
+
+    private CollationKey nameKey(Product product) {
+        String name = product.getName();
+        CollationKey key = product.nameSortKey;
+        if (key == null || key.getSourceString() != name) {
+            key = collator.getCollationKey(name);
+            product.nameSortKey = key;
+        }
+        return key;
+    }
+
+    private CollationKey brandKey(Product product) {
+        String brand = product.getBrand();
+        CollationKey key = product.brandSortKey;
+        if (key == null || key.getSourceString() != brand) {
+            key = collator.getCollationKey(brand);
+            product.brandSortKey = key;
+        }
+        return key;
+    }
+}
@@ -0,0 +1,418 @@
+package core;
+
+import core.ProductOrder.SortKey;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+// Хранилище товаров на диске для каталогов, которые не помещаются в
+// память. Каталог - это папка с файлами:
+//   store.meta   - заголовок: число записей и признак порядка по id;
+//   products.dat - записи фиксированной длины в порядке загрузки;
+//   names.dat    - имена, которые не поместились в запись;
+//   brands.txt   - словарь брендов, в записи хранится номер бренда;
+//   order-*.idx  - индексы сортировки (ProductStoreIndex).
+// Запись: id, цена, остаток, среднее количество, номер бренда, длина
+// имени и само имя в UTF-8 либо смещение в names.dat.
+//
+// Чтение позиционное и потокобезопасное. В памяти держится только словарь
+// брендов: сортировка и отбор выполняются здесь же, проходом по файлам,
+// а результат запроса - это файл с номерами записей (View).
+public class ProductStore implements Closeable {
+    static final int RECORD_SIZE = 64;
+    private static final int NAME_OFFSET = 28;
+    private static final int INLINE_NAME_BYTES = RECORD_SIZE - NAME_OFFSET;
+    private static final int MAGIC = 0x494E5643; // "INVC"
+    private static final int VERSION = 1;
+    private static final int SCAN_BLOCK_RECORDS = 1 << 14;
+
+    static final String META_FILE = "store.meta";
+    private static final String RECORDS_FILE = "products.dat";
+    private static final String NAMES_FILE = "names.dat";
+    private static final String BRANDS_FILE = "brands.txt";
+
+    // Номера записей в порядке и с отбором запроса. Без файла - все записи
+    // в порядке хранения. Временный файл удаляется при закрытии.
+    public static class View implements Closeable {
+        private final int size;
+        private final FileChannel index;
+        private final Path temporaryFile;
+
+        View(int size, Path indexFile, boolean temporary) throws IOException {
+            this.size = size;
+            this.index = indexFile == null ? null : FileChannel.open(indexFile, StandardOpenOption.READ);
+            this.temporaryFile = temporary ? indexFile : null;
+        }
+
+        public int size() { return size; }
+
+        // Номера записей для позиций from .. from + count
+        public void rows(int from, int count, int[] rows) throws IOException {
+            if (index == null) {
+                for (int i = 0; i < count; i++) {
+                    rows[i] = from + i;
+                }
+                return;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(count * Integer.BYTES);
+            readFully(index, buffer, (long) from * Integer.BYTES);
+            buffer.flip();
+            buffer.asIntBuffer().get(rows, 0, count);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (index != null) {
+                index.close();
+            }
+            if (temporaryFile != null) {
+                Files.deleteIfExists(temporaryFile);
+            }
+        }
+    }
+
+    // Запись, на которой стоит проход по хранилищу. Имя декодируется
+    // только по запросу: для отбора по остатку оно не нужно.
+    final class Cursor {
+        private ByteBuffer block;
+        private int offset;
+        int row;
+
+        int id() { return block.getInt(offset); }
+        double price() { return block.getDouble(offset + 4); }
+        int quantity() { return block.getInt(offset + 12); }
+        int averageQuantity() { return block.getInt(offset + 16); }
+        int brand() { return block.getInt(offset + 20); }
+        String name() throws IOException { return readName(block, offset); }
+    }
+
+    interface RecordVisitor {
+        void visit(Cursor cursor) throws IOException;
+    }
+
+    private final Path directory;
+    private final FileChannel records;
+    private final FileChannel names;
+    private final List<String> brands;
+    private final int size;
+    private final boolean idOrdered;
+    private final ProductStoreIndex indexes;
+
+    private ProductStore(Path directory) throws IOException {
+        this.directory = directory;
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(directory.resolve(META_FILE)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Папка не является каталогом товаров: " + directory);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Неподдерживаемая версия каталога: " + version);
+            }
+            this.size = in.readInt();
+            this.idOrdered = in.readBoolean();
+        }
+        this.brands = Files.readAllLines(directory.resolve(BRANDS_FILE), StandardCharsets.UTF_8);
+        this.records = FileChannel.open(directory.resolve(RECORDS_FILE), StandardOpenOption.READ);
+        this.names = FileChannel.open(directory.resolve(NAMES_FILE), StandardOpenOption.READ);
+        if (records.size() != (long) size * RECORD_SIZE) {
+            close();
+            throw new IOException("Каталог поврежден: " + directory);
+        }
+        this.indexes = new ProductStoreIndex(this);
+    }
+
+    public static ProductStore open(Path directory) throws IOException {
+        return new ProductStore(directory);
+    }
+
+    public static boolean exists(Path directory) {
+        return Files.exists(directory.resolve(META_FILE));
+    }
+
+    public static Writer create(Path directory) throws IOException {
+        return new Writer(directory);
+    }
+
+    public int size() { return size; }
+    public Path getDirectory() { return directory; }
+    boolean isIdOrdered() { return idOrdered; }
+    List<String> getBrands() { return brands; }
+
+    // Все записи в порядке хранения, без файла индекса
+    public View allRows() throws IOException {
+        return new View(size, null, false);
+    }
+
+    public Product read(int row) throws IOException {
+        Product[] result = new Product[1];
+        read(new int[]{row}, 1, result);
+        return result[0];
+    }
+
+    // Читает записи rows[0 .. count) в products. Соседние номера читаются
+    // одним обращением к файлу: в порядке хранения страница - это один read.
+    public void read(int[] rows, int count, Product[] products) throws IOException {
+        long[] sorted = new long[count];
+        for (int i = 0; i < count; i++) {
+            checkRow(rows[i]);
+            sorted[i] = (long) rows[i] << 32 | i;
+        }
+        Arrays.sort(sorted);
+
+        int runStart = 0;
+        while (runStart < count) {
+            int runEnd = runStart + 1;
+            while (runEnd < count && (int) (sorted[runEnd] >>> 32) == (int) (sorted[runEnd - 1] >>> 32) + 1) {
+                runEnd++;
+            }
+            int firstRow = (int) (sorted[runStart] >>> 32);
+            ByteBuffer block = ByteBuffer.allocate((runEnd - runStart) * RECORD_SIZE);
+            readFully(records, block, (long) firstRow * RECORD_SIZE);
+            for (int i = runStart; i < runEnd; i++) {
+                products[(int) sorted[i]] = decode(block, (i - runStart) * RECORD_SIZE);
+            }
+            runStart = runEnd;
+        }
+    }
+
+    // Индекс для порядка сортировки строится при первом запросе и
+    // остается в папке каталога
+    public View query(List<SortKey> keys, int minQuantity, boolean showZeroQuantity, String searchText,
+                      BooleanSupplier cancelled) throws IOException {
+        long start = System.nanoTime();
+        Path order = indexes.orderIndex(keys, cancelled);
+        if (cancelled.getAsBoolean()) {
+            return null;
+        }
+        String search = searchText == null || searchText.trim().isEmpty() ? null : searchText.toLowerCase();
+        boolean hideZero = !showZeroQuantity;
+        if (minQuantity <= 0 && !hideZero && search == null) {
+            Metrics.CATALOG_QUERY.recordSince(start);
+            return new View(size, order, false);
+        }
+
+        BitSet matches = filter(minQuantity, hideZero, search, cancelled);
+        if (matches == null) {
+            return null;
+        }
+        View view = indexes.select(order, matches, cancelled);
+        Metrics.CATALOG_QUERY.recordSince(start);
+        return view;
+    }
+
+    // Отбор - последовательный проход по записям; совпадения бренда
+    // проверяются один раз по словарю
+    private BitSet filter(int minQuantity, boolean hideZero, String search,
+                          BooleanSupplier cancelled) throws IOException {
+        // Условия по остатку те же, что в ProductFilter: минимум 0 не отсекает
+        // отрицательные остатки
+        boolean quantityActive = minQuantity > 0 || hideZero;
+        boolean[] brandMatches = new boolean[brands.size()];
+        if (search != null) {
+            for (int i = 0; i < brands.size(); i++) {
+                brandMatches[i] = brands.get(i).toLowerCase().contains(search);
+            }
+        }
+        BitSet matches = new BitSet(size);
+        boolean completed = scan(cursor -> {
+            int quantity = cursor.quantity();
+            if (quantityActive && (quantity < minQuantity || (hideZero && quantity <= 0))) {
+                return;
+            }
+            if (search == null || brandMatches[cursor.brand()] || cursor.name().toLowerCase().contains(search)) {
+                matches.set(cursor.row);
+            }
+        }, cancelled);
+        return completed ? matches : null;
+    }
+
+    // Проход по всем записям в порядке хранения; false, если отменен
+    boolean scan(RecordVisitor visitor, BooleanSupplier cancelled) throws IOException {
+        Cursor cursor = new Cursor();
+        ByteBuffer block = ByteBuffer.allocate(SCAN_BLOCK_RECORDS * RECORD_SIZE);
+        cursor.block = block;
+        for (int first = 0; first < size; first += SCAN_BLOCK_RECORDS) {
+            int count = Math.min(SCAN_BLOCK_RECORDS, size - first);
+            block.clear().limit(count * RECORD_SIZE);
+            readFully(records, block, (long) first * RECORD_SIZE);
+            for (int i = 0; i < count; i++) {
+                cursor.row = first + i;
+                cursor.offset = i * RECORD_SIZE;
+                visitor.visit(cursor);
+            }
+            if (cancelled.getAsBoolean()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Product decode(ByteBuffer block, int offset) throws IOException {
+        return new Product(block.getInt(offset), readName(block, offset), brands.get(block.getInt(offset + 20)),
+                block.getDouble(offset + 4), block.getInt(offset + 12), block.getInt(offset + 16));
+    }
+
+    private String readName(ByteBuffer block, int offset) throws IOException {
+        int length = block.getInt(offset + 24);
+        if (length <= INLINE_NAME_BYTES) {
+            byte[] bytes = new byte[length];
+            block.get(offset + NAME_OFFSET, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        ByteBuffer name = ByteBuffer.allocate(length);
+        readFully(names, name, block.getLong(offset + NAME_OFFSET));
+        return new String(name.array(), StandardCharsets.UTF_8);
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Запись " + row + " вне диапазона 0.." + (size - 1));
+        }
+    }
+
+    static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Неожиданный конец файла каталога");
+            }
+            position += read;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            records.close();
+        } finally {
+            names.close();
+        }
+    }
+
+    // Запись нового каталога. Товары добавляются по одному, в памяти
+    // копится только словарь брендов и буфер записей.
+    public static class Writer implements Closeable {
+        private static final int BUFFER_RECORDS = 1 << 14;
+
+        private final Path directory;
+        private final FileChannel records;
+        private final FileChannel names;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_RECORDS * RECORD_SIZE);
+        private final Map<String, Integer> brandCodes = new HashMap<>();
+        private final List<String> brands = new ArrayList<>();
+        private long namesSize;
+        private int size;
+        private int lastId = Integer.MIN_VALUE;
+        private boolean idOrdered = true;
+
+        private Writer(Path directory) throws IOException {
+            this.directory = directory;
+            Files.createDirectories(directory);
+            // Старый каталог и его индексы больше не действительны
+            try (var files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+            this.records = FileChannel.open(directory.resolve(RECORDS_FILE), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.names = FileChannel.open(directory.resolve(NAMES_FILE), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        public int size() { return size; }
+
+        public void add(Product product) throws IOException {
+            if (size == Integer.MAX_VALUE) {
+                throw new IOException("Слишком много товаров для каталога");
+            }
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            String brand = product.getBrand();
+            Integer code = brandCodes.get(brand);
+            if (code == null) {
+                code = brands.size();
+                brandCodes.put(brand, code);
+                brands.add(brand);
+            }
+            byte[] name = product.getName().getBytes(StandardCharsets.UTF_8);
+
+            int offset = buffer.position();
+            buffer.putInt(product.getId());
+            buffer.putDouble(product.getPrice());
+            buffer.putInt(product.getQuantity());
+            buffer.putInt(product.getAverageQuantity());
+            buffer.putInt(code);
+            buffer.putInt(name.length);
+            if (name.length <= INLINE_NAME_BYTES) {
+                buffer.put(name);
+            } else {
+                buffer.putLong(namesSize);
+                ByteBuffer overflow = ByteBuffer.wrap(name);
+                while (overflow.hasRemaining()) {
+                    namesSize += names.write(overflow, namesSize);
+                }
+            }
+            buffer.position(offset + RECORD_SIZE);
+
+            if (product.getId() <= lastId) {
+                idOrdered = false;
+            }
+            lastId = product.getId();
+            size++;
+        }
+
+        // Заголовок пишется последним: каталог без него не откроется
+        public ProductStore finish() throws IOException {
+            flush();
+            records.force(true);
+            names.force(true);
+            close();
+            Files.write(directory.resolve(BRANDS_FILE), brands, StandardCharsets.UTF_8);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Channels.newOutputStream(FileChannel.open(directory.resolve(META_FILE),
+                            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(size);
+                out.writeBoolean(idOrdered);
+            }
+            return open(directory);
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                records.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                records.close();
+            } finally {
+                names.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package core;
+
+import core.ProductOrder.Column;
+import core.ProductOrder.SortKey;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.function.BooleanSupplier;
+
+// Индексы сортировки каталога на диске. Индекс - файл номеров записей в
+// нужном порядке; он строится внешней сортировкой, поэтому память
+// ограничена размером одной серии, а не числом товаров.
+//
+// Каждой записи сопоставляется ключ из байтов, которые сравниваются как
+// беззнаковые: столбцы сортировки, затем id и номер записи. Порядок тот же,
+// что у ProductOrder: строки по правилам Collator текущей локали,
+// при равенстве всех ключей - по возрастанию id.
+class ProductStoreIndex {
+    private static final long RUN_BUDGET_BYTES = 32 << 20;
+    private static final int ENTRY_OVERHEAD = 24;
+    private static final int BLOCK_ROWS = 1 << 14;
+    // Длина серии пишется двумя байтами; у очень длинных имен в ключ
+    // попадает только начало
+    private static final int MAX_TEXT_KEY_BYTES = 16 << 10;
+
+    private final ProductStore store;
+    private final Collator collator = Collator.getInstance();
+    private int[] brandRanks;
+
+    ProductStoreIndex(ProductStore store) {
+        this.store = store;
+    }
+
+    // null - записи уже лежат в нужном порядке
+    synchronized Path orderIndex(List<SortKey> keys, BooleanSupplier cancelled) throws IOException {
+        List<SortKey> effectiveKeys = new ArrayList<>(keys);
+        if (effectiveKeys.isEmpty() || effectiveKeys.get(effectiveKeys.size() - 1).getColumn() != Column.ID) {
+            effectiveKeys.add(SortKey.ascending(Column.ID));
+        }
+        if (effectiveKeys.size() == 1 && !effectiveKeys.get(0).isDescending() && store.isIdOrdered()) {
+            return null;
+        }
+
+        Path file = store.getDirectory().resolve(fileName(effectiveKeys));
+        if (!Files.exists(file)) {
+            build(effectiveKeys, file, cancelled);
+        }
+        return cancelled.getAsBoolean() ? null : file;
+    }
+
+    // Номера записей из matches в порядке order (null - порядок хранения)
+    ProductStore.View select(Path order, BitSet matches, BooleanSupplier cancelled) throws IOException {
+        Path file = Files.createTempFile(store.getDirectory(), "view-", ".idx");
+        int count = 0;
+        try (DataOutputStream out = openOutput(file)) {
+            if (order == null) {
+                for (int row = matches.nextSetBit(0); row >= 0; row = matches.nextSetBit(row + 1)) {
+                    out.writeInt(row);
+                    count++;
+                }
+            } else {
+                try (FileChannel in = FileChannel.open(order, StandardOpenOption.READ)) {
+                    ByteBuffer block = ByteBuffer.allocate(BLOCK_ROWS * Integer.BYTES);
+                    for (long position = 0; position < in.size(); position += block.limit()) {
+                        block.clear().limit((int) Math.min(block.capacity(), in.size() - position));
+                        ProductStore.readFully(in, block, position);
+                        for (int i = 0; i < block.limit(); i += Integer.BYTES) {
+                            int row = block.getInt(i);
+                            if (matches.get(row)) {
+                                out.writeInt(row);
+                                count++;
+                            }
+                        }
+                        if (cancelled.getAsBoolean()) {
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        if (cancelled.getAsBoolean()) {
+            Files.deleteIfExists(file);
+            return null;
+        }
+        return new ProductStore.View(count, file, true);
+    }
+
+    private String fileName(List<SortKey> keys) {
+        StringBuilder name = new StringBuilder("order");
+        boolean textKeys = false;
+        for (SortKey key : keys) {
+            name.append('-').append(key.getColumn().name().toLowerCase(Locale.ROOT))
+                    .append(key.isDescending() ? "-desc" : "-asc");
+            textKeys |= key.getColumn() == Column.NAME || key.getColumn() == Column.BRAND;
+        }
+        // Порядок строк зависит от локали, поэтому она входит в имя индекса
+        if (textKeys) {
+            name.append('-').append(Locale.getDefault().toLanguageTag());
+        }
+        return name.append(".idx").toString();
+    }
+
+    // Серии ограниченного размера сортируются в памяти и пишутся во
+    // временные файлы, затем сливаются в индекс
+    private void build(List<SortKey> keys, Path file, BooleanSupplier cancelled) throws IOException {
+        List<Path> runs = new ArrayList<>();
+        try {
+            List<byte[]> run = new ArrayList<>();
+            long[] runBytes = {0};
+            boolean completed = store.scan(cursor -> {
+                byte[] entry = entry(keys, cursor);
+                run.add(entry);
+                runBytes[0] += entry.length + ENTRY_OVERHEAD;
+                if (runBytes[0] >= RUN_BUDGET_BYTES) {
+                    runs.add(writeRun(run));
+                    run.clear();
+                    runBytes[0] = 0;
+                }
+            }, cancelled);
+            if (!completed) {
+                return;
+            }
+            if (!run.isEmpty() || runs.isEmpty()) {
+                runs.add(writeRun(run));
+            }
+            run.clear();
+            merge(runs, file, cancelled);
+        } finally {
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+        }
+    }
+
+    private byte[] entry(List<SortKey> keys, ProductStore.Cursor cursor) throws IOException {
+        ByteBuffer key = ByteBuffer.allocate(64);
+        for (SortKey sortKey : keys) {
+            int start = key.position();
+            switch (sortKey.getColumn()) {
+                case NAME:
+                    key = putText(key, collator.getCollationKey(cursor.name()).toByteArray());
+                    break;
+                case BRAND:
+                    key = ensure(key, 4).putInt(brandRank(cursor.brand()) ^ Integer.MIN_VALUE);
+                    break;
+                case PRICE:
+                    long bits = Double.doubleToLongBits(cursor.price());
+                    key = ensure(key, 8).putLong(bits < 0 ? ~bits : bits ^ Long.MIN_VALUE);
+                    break;
+                case QUANTITY:
+                    key = ensure(key, 4).putInt(cursor.quantity() ^ Integer.MIN_VALUE);
+                    break;
+                case ID:
+                default:
+                    key = ensure(key, 4).putInt(cursor.id() ^ Integer.MIN_VALUE);
+                    break;
+            }
+            if (sortKey.isDescending()) {
+                for (int i = start; i < key.position(); i++) {
+                    key.put(i, (byte) ~key.get(i));
+                }
+            }
+        }
+        key = ensure(key, 4).putInt(cursor.row);
+        return Arrays.copyOf(key.array(), key.position());
+    }
+
+    // Строка переменной длины: нулевой байт экранируется, в конце - два
+    // нулевых. Так более короткая строка идет раньше своих продолжений,
+    // а следующие столбцы ключа не смешиваются со строкой.
+    private static ByteBuffer putText(ByteBuffer key, byte[] text) {
+        int length = Math.min(text.length, MAX_TEXT_KEY_BYTES);
+        key = ensure(key, length * 2 + 2);
+        for (int i = 0; i < length; i++) {
+            byte b = text[i];
+            key.put(b);
+            if (b == 0) {
+                key.put((byte) 0xFF);
+            }
+        }
+        return key.put((byte) 0).put((byte) 0);
+    }
+
+    private static ByteBuffer ensure(ByteBuffer key, int needed) {
+        if (key.remaining() >= needed) {
+            return key;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(key.capacity() * 2, key.position() + needed));
+        return larger.put(key.flip());
+    }
+
+    // Ранг бренда по правилам Collator: словарь брендов мал и сортируется в памяти
+    private int brandRank(int brand) {
+        if (brandRanks == null) {
+            List<String> brands = store.getBrands();
+            Integer[] order = new Integer[brands.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> collator.compare(brands.get(a), brands.get(b)));
+            int[] ranks = new int[order.length];
+            for (int rank = 0, i = 0; i < order.length; i++) {
+                if (i > 0 && collator.compare(brands.get(order[i - 1]), brands.get(order[i])) != 0) {
+                    rank = i;
+                }
+                ranks[order[i]] = rank;
+            }
+            brandRanks = ranks;
+        }
+        return brandRanks[brand];
+    }
+
+    private Path writeRun(List<byte[]> run) throws IOException {
+        run.sort(Arrays::compareUnsigned);
+        Path file = Files.createTempFile(store.getDirectory(), "run-", ".tmp");
+        try (DataOutputStream out = openOutput(file)) {
+            for (byte[] entry : run) {
+                out.writeShort(entry.length);
+                out.write(entry);
+            }
+        }
+        return file;
+    }
+
+    private static class RunReader {
+        private final DataInputStream in;
+        private byte[] current;
+
+        RunReader(Path file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16));
+        }
+
+        boolean next() throws IOException {
+            int length;
+            try {
+                length = in.readUnsignedShort();
+            } catch (EOFException e) {
+                current = null;
+                return false;
+            }
+            current = new byte[length];
+            in.readFully(current);
+            return true;
+        }
+
+        int row() {
+            return ByteBuffer.wrap(current, current.length - 4, 4).getInt();
+        }
+    }
+
+    private void merge(List<Path> runs, Path file, BooleanSupplier cancelled) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        PriorityQueue<RunReader> queue = new PriorityQueue<>((a, b) -> Arrays.compareUnsigned(a.current, b.current));
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            for (Path run : runs) {
+                RunReader reader = new RunReader(run);
+                readers.add(reader);
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+            long written = 0;
+            try (DataOutputStream out = openOutput(temp)) {
+                while (!queue.isEmpty()) {
+                    RunReader reader = queue.poll();
+                    out.writeInt(reader.row());
+                    if (reader.next()) {
+                        queue.add(reader);
+                    }
+                    if (++written % BLOCK_ROWS == 0 && cancelled.getAsBoolean()) {
+                        break;
+                    }
+                }
+            }
+            if (cancelled.getAsBoolean()) {
+                return;
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            for (RunReader reader : readers) {
+                reader.in.close();
+            }
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static DataOutputStream openOutput(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+    }
+}
@@ -0,0 +1,452 @@
+package core;
+
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.function.Predicate;
+
+// Триграммный индекс по именам и брендам товаров для строки поиска.
+// Для запроса из трех и более символов кандидаты берутся из самого
+// короткого списка триграмм и только затем проверяются целиком.
+// Совпадения помечаются номером запроса прямо в товаре, поэтому проверка
+// в FilteredList - это одно сравнение. Пометки последнего запроса
+// поддерживаются при добавлении, изменении и удалении товаров.
+//
+// Изменения и установка пометок выполняются в потоке JavaFX; prepare()
+// можно вызывать из фонового потока, поэтому все методы синхронизированы.
+// Списки триграмм строятся при первом поиске, а не при загрузке: на
+// миллионе товаров это секунды, которые не нужны, пока поиском не пользуются.
+// Строит их отдельный поток по копии ключей, не удерживая индекс, а
+// изменения, пришедшие за это время, дописываются в конце. До готовности
+// списков поиск проверяет все товары.
+public class SearchIndex {
+    private static final int GRAM_LENGTH = 3;
+    // Прерывание фонового поиска проверяется раз в столько товаров
+    private static final int CANCEL_CHECK_INTERVAL = 4096;
+    // prepare() проверяет кандидатов частями такого размера, отпуская индекс
+    // между ними, и начинает заново не больше MAX_SCAN_RESTARTS раз
+    private static final int SCAN_CHUNK = 4096;
+    private static final int MAX_SCAN_RESTARTS = 3;
+    // Сколько переиндексированных товаров помнить для поправки устаревшего результата
+    private static final int MAX_REINDEXED = 1 << 16;
+    // Столько изменений, пришедших во время построения, применяется под блокировкой
+    private static final int MAX_LOCKED_CHANGES = 256;
+
+    // Результат поиска, подготовленный вне потока JavaFX
+    public static class Result {
+        private final String query;
+        private final List<Product> matches;
+        private final long version;
+        // false - поиск остановлен на пределе числа совпадений
+        private final boolean complete;
+
+        Result(String query, List<Product> matches, long version, boolean complete) {
+            this.query = query;
+            this.matches = matches;
+            this.version = version;
+            this.complete = complete;
+        }
+
+        public String getQuery() { return query; }
+        public int getMatchCount() { return matches.size(); }
+        public List<Product> getMatches() { return Collections.unmodifiableList(matches); }
+    }
+
+    // Изменение, пришедшее во время построения списков триграмм
+    private static class PostingChange {
+        final Product product;
+        final String key;
+        final boolean added;
+
+        PostingChange(Product product, String key, boolean added) {
+            this.product = product;
+            this.key = key;
+            this.added = added;
+        }
+    }
+
+    private final List<Product> products = new ArrayList<>();
+    private Map<Long, List<Product>> postings = new HashMap<>();
+    private boolean postingsBuilt;
+    private boolean building;
+    // null - построение не идет или его результат отменен очисткой
+    private List<PostingChange> buildChanges;
+    private long version;
+
+    // Товары, добавленные или измененные начиная с версии reindexedSince
+    private final List<Product> reindexed = new ArrayList<>();
+    private long reindexedSince;
+
+    private String liveQuery;
+    private int liveMark;
+
+    public synchronized void add(Product product) {
+        add(product, keyOf(product.getName(), product.getBrand()));
+    }
+
+    // Ключ уже посчитан вызывающим, например для индекса уникальности
+    synchronized void add(Product product, String key) {
+        product.searchKey = key;
+        product.searchSlot = products.size();
+        products.add(product);
+        if (postingsBuilt) {
+            addPostings(postings, product, key);
+        } else if (buildChanges != null) {
+            buildChanges.add(new PostingChange(product, key, true));
+        }
+        if (reindexed.size() == MAX_REINDEXED) {
+            reindexed.clear();
+            reindexedSince = version;
+        }
+        reindexed.add(product);
+        product.searchMark = liveQuery != null && key.contains(liveQuery) ? liveMark : 0;
+        version++;
+    }
+
+    public synchronized void remove(Product product) {
+        String key = product.searchKey;
+        if (key == null) {
+            return;
+        }
+        product.searchKey = null;
+        product.searchMark = 0;
+
+        Product last = products.remove(products.size() - 1);
+        if (last != product) {
+            products.set(product.searchSlot, last);
+            last.searchSlot = product.searchSlot;
+        }
+        if (postingsBuilt) {
+            removePostings(postings, product, key);
+        } else if (buildChanges != null) {
+            buildChanges.add(new PostingChange(product, key, false));
+        }
+        version++;
+    }
+
+    // Переиндексирует товар после изменения имени или бренда
+    public synchronized void update(Product product) {
+        if (product.searchKey != null && product.searchKey.equals(keyOf(product.getName(), product.getBrand()))) {
+            return;
+        }
+        remove(product);
+        add(product);
+    }
+
+    public synchronized void clear() {
+        for (Product product : products) {
+            product.searchKey = null;
+            product.searchMark = 0;
+        }
+        products.clear();
+        postings = new HashMap<>();
+        postingsBuilt = false;
+        buildChanges = null;
+        reindexed.clear();
+        version++;
+        reindexedSince = version;
+    }
+
+    // Строит списки триграмм в вызывающем потоке, если их еще нет; идущее
+    // в другом потоке построение дожидается. Нужен тем, кто хочет мерить
+    // поиск уже по готовым спискам.
+    public void buildPostings() {
+        synchronized (this) {
+            while (building) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (postingsBuilt) {
+                return;
+            }
+            building = true;
+        }
+        runBuild();
+    }
+
+    // Поиск без изменения пометок; безопасен для фонового потока. Прерывание
+    // потока останавливает проверку товаров через CancellationException.
+    public Result prepare(String query) {
+        return prepare(query, Integer.MAX_VALUE);
+    }
+
+    // Поиск до limit совпадений. Кандидаты проверяются частями, и между
+    // частями индекс свободен: изменения в потоке JavaFX ждут одну часть, а
+    // не весь поиск. Если индекс за это время изменился, поиск начинается
+    // заново, а после MAX_SCAN_RESTARTS попыток доводится под блокировкой.
+    public Result prepare(String query, int limit) {
+        String normalized = query.toLowerCase();
+        Thread thread = Thread.currentThread();
+        for (int attempt = 0; ; attempt++) {
+            List<Product> matches = new ArrayList<>();
+            long startVersion;
+            synchronized (this) {
+                startVersion = version;
+            }
+            int from = 0;
+            while (true) {
+                synchronized (this) {
+                    if (version != startVersion) {
+                        break;
+                    }
+                    if (thread.isInterrupted()) {
+                        throw new CancellationException("Поиск отменен");
+                    }
+                    List<Product> candidates = candidates(normalized);
+                    int to = attempt >= MAX_SCAN_RESTARTS ? candidates.size()
+                            : Math.min(from + SCAN_CHUNK, candidates.size());
+                    for (int i = from; i < to && matches.size() < limit; i++) {
+                        Product product = candidates.get(i);
+                        if (product.searchKey.contains(normalized)) {
+                            matches.add(product);
+                        }
+                    }
+                    if (matches.size() >= limit) {
+                        return new Result(normalized, matches, startVersion, false);
+                    }
+                    if (to == candidates.size()) {
+                        return new Result(normalized, matches, startVersion, true);
+                    }
+                    from = to;
+                }
+            }
+        }
+    }
+
+    // Предикат для FilteredList: совпадения уже помечены, проверка - сравнение числа
+    public synchronized Predicate<Product> matcher(String query) {
+        return matcher(prepare(query));
+    }
+
+    // Применяет подготовленный результат. Если индекс успел измениться,
+    // заново проверяются только товары, добавленные или измененные после
+    // подготовки; полный поиск повторяется, лишь когда их было слишком много.
+    public synchronized Predicate<Product> matcher(Result result) {
+        boolean patch = result.complete && result.version != version && result.version >= reindexedSince;
+        List<Product> matches = result.complete && (result.version == version || patch)
+                ? result.matches : findMatches(result.query);
+        int mark = ++liveMark == 0 ? ++liveMark : liveMark;
+        liveQuery = result.query;
+        for (Product product : matches) {
+            product.searchMark = mark;
+        }
+        if (patch) {
+            for (Product product : reindexed) {
+                product.searchMark = product.searchKey != null && product.searchKey.contains(result.query) ? mark : 0;
+            }
+        }
+        // Дальше пометки поддерживает add(), старые записи не нужны
+        reindexed.clear();
+        reindexedSince = version;
+        return product -> product.searchMark == mark;
+    }
+
+    public synchronized void clearMatcher() {
+        liveQuery = null;
+    }
+
+    private List<Product> findMatches(String query) {
+        List<Product> candidates = candidates(query);
+        List<Product> matches = new ArrayList<>();
+        Thread thread = Thread.currentThread();
+        for (int i = 0; i < candidates.size(); i++) {
+            if (i % CANCEL_CHECK_INTERVAL == 0 && thread.isInterrupted()) {
+                throw new CancellationException("Поиск отменен");
+            }
+            Product product = candidates.get(i);
+            if (product.searchKey.contains(query)) {
+                matches.add(product);
+            }
+        }
+        return matches;
+    }
+
+    private List<Product> candidates(String query) {
+        return query.length() < GRAM_LENGTH ? products : smallestPosting(query);
+    }
+
+    // Пока списки триграмм строятся, кандидаты - все товары
+    private List<Product> smallestPosting(String query) {
+        if (!postingsBuilt) {
+            if (!building) {
+                building = true;
+                Thread.ofPlatform().name("search-index").daemon().start(this::runBuild);
+            }
+            return products;
+        }
+        List<Product> smallest = null;
+        for (int i = 0; i + GRAM_LENGTH <= query.length(); i++) {
+            List<Product> posting = postings.get(gram(query, i));
+            if (posting == null) {
+                return Collections.emptyList();
+            }
+            if (smallest == null || posting.size() < smallest.size()) {
+                smallest = posting;
+            }
+        }
+        return smallest;
+    }
+
+    // Вызывается с building == true. Ключи копируются под блокировкой,
+    // списки строятся без нее. Изменения за это время применяются пачками
+    // тоже без блокировки, пока их не останется немного; последний остаток
+    // применяется уже под блокировкой вместе с подменой списков.
+    private void runBuild() {
+        Product[] snapshot;
+        String[] keys;
+        List<PostingChange> changes = new ArrayList<>();
+        synchronized (this) {
+            snapshot = products.toArray(new Product[0]);
+            keys = new String[snapshot.length];
+            for (int i = 0; i < snapshot.length; i++) {
+                keys[i] = snapshot[i].searchKey;
+            }
+            buildChanges = changes;
+        }
+
+        Map<Long, List<Product>> built = new HashMap<>();
+        boolean complete = false;
+        try {
+            for (int i = 0; i < snapshot.length; i++) {
+                addPostings(built, snapshot[i], keys[i]);
+            }
+            while (true) {
+                List<PostingChange> batch;
+                synchronized (this) {
+                    // Очистка во время построения делает результат ненужным
+                    if (buildChanges != changes) {
+                        return;
+                    }
+                    if (changes.size() <= MAX_LOCKED_CHANGES) {
+                        applyChanges(built, changes);
+                        postings = built;
+                        postingsBuilt = true;
+                        // Кандидаты сменились: поиск частями, идущий по старым, начнется заново
+                        version++;
+                        complete = true;
+                        return;
+                    }
+                    batch = new ArrayList<>(changes);
+                    changes.clear();
+                }
+                applyChanges(built, batch);
+            }
+        } finally {
+            synchronized (this) {
+                if (buildChanges == changes) {
+                    buildChanges = null;
+                }
+                if (!complete) {
+                    postingsBuilt = false;
+                }
+                building = false;
+                notifyAll();
+            }
+        }
+    }
+
+    // Применяет пачку изменений по итогу для каждого товара: удаление идет
+    // одним проходом по каждому затронутому списку, а не поиском товара в
+    // списке на каждое изменение
+    private static void applyChanges(Map<Long, List<Product>> postings, List<PostingChange> changes) {
+        // Ключ товара в списках до пачки и после нее; null - товара нет
+        Map<Product, String[]> net = new IdentityHashMap<>();
+        for (PostingChange change : changes) {
+            String[] keys = net.get(change.product);
+            if (keys == null) {
+                keys = new String[]{change.added ? null : change.key, null};
+                net.put(change.product, keys);
+            }
+            keys[1] = change.added ? change.key : null;
+        }
+
+        Map<Long, Set<Product>> removals = new HashMap<>();
+        net.forEach((product, keys) -> {
+            if (keys[0] != null && !keys[0].equals(keys[1])) {
+                forEachGram(keys[0], gram -> removals
+                        .computeIfAbsent(gram, g -> Collections.newSetFromMap(new IdentityHashMap<>()))
+                        .add(product));
+            }
+        });
+        removals.forEach((gram, removed) -> {
+            List<Product> posting = postings.get(gram);
+            if (posting != null) {
+                posting.removeIf(removed::contains);
+                if (posting.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        });
+        net.forEach((product, keys) -> {
+            if (keys[1] != null && !keys[1].equals(keys[0])) {
+                addPostings(postings, product, keys[1]);
+            }
+        });
+    }
+
+    private static void addPostings(Map<Long, List<Product>> postings, Product product, String key) {
+        forEachGram(key, gram -> {
+            List<Product> posting = postings.computeIfAbsent(gram, g -> new ArrayList<>());
+            // Повтор триграммы внутри одного товара дает тот же товар в хвосте списка
+            if (posting.isEmpty() || posting.get(posting.size() - 1) != product) {
+                posting.add(product);
+            }
+        });
+    }
+
+    private static void removePostings(Map<Long, List<Product>> postings, Product product, String key) {
+        forEachGram(key, gram -> {
+            List<Product> posting = postings.get(gram);
+            if (posting == null) {
+                return;
+            }
+            int index = indexOf(posting, product);
+            if (index >= 0) {
+                // Порядок в списке триграммы не важен: удаляем перестановкой с последним
+                posting.set(index, posting.get(posting.size() - 1));
+                posting.remove(posting.size() - 1);
+            }
+            if (posting.isEmpty()) {
+                postings.remove(gram);
+            }
+        });
+    }
+
+    // Имя и бренд в нижнем регистре; тот же ключ проверяет уникальность товаров
+    static String keyOf(String name, String brand) {
+        return name.toLowerCase() + '\n' + brand.toLowerCase();
+    }
+
+    private interface GramConsumer {
+        void accept(long gram);
+    }
+
+    // Триграммы не пересекают границу между именем и брендом
+    private static void forEachGram(String key, GramConsumer consumer) {
+        int start = 0;
+        for (int i = 0; i <= key.length(); i++) {
+            if (i == key.length() || key.charAt(i) == '\n') {
+                for (int j = start; j + GRAM_LENGTH <= i; j++) {
+                    consumer.accept(gram(key, j));
+                }
+                start = i + 1;
+            }
+        }
+    }
+
+    private static long gram(String text, int index) {
+        return ((long) text.charAt(index) << 32) | ((long) text.charAt(index + 1) << 16) | text.charAt(index + 2);
+    }
+
+    private static int indexOf(List<Product> posting, Product product) {
+        for (int i = 0; i < posting.size(); i++) {
+            if (posting.get(i) == product) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
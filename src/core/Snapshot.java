@@ -0,0 +1,191 @@
+package core;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+// Двоичный снимок состояния модели: товары, следующий id, счетчики
+// операций и хвост истории. Пишется во временный файл, который затем
+// атомарно переименовывается; читается через отображение файла в память.
+// Номер эпохи связывает снимок с журналом: журнал с той же эпохой
+// содержит изменения, сделанные уже после снимка.
+//
+// Формат: заголовок, словарь брендов, товары (числа и имя в UTF-8,
+// бренд - номер в словаре), события истории.
+public final class Snapshot {
+    private static final int MAGIC = 0x494E5653; // "INVS"
+    private static final int VERSION = 2;
+
+    private Snapshot() {
+    }
+
+    public static void write(Path file, Inventory inventory, long epoch) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        List<Product> products = inventory.getProducts();
+        Map<String, Integer> brandCodes = new HashMap<>();
+        List<String> brands = new ArrayList<>();
+        for (Product product : products) {
+            if (brandCodes.putIfAbsent(product.getBrand(), brands.size()) == null) {
+                brands.add(product.getBrand());
+            }
+        }
+
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                 DataOutputStream out = new DataOutputStream(
+                         new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(epoch);
+                out.writeInt(inventory.getNextId());
+                out.writeInt(inventory.getAddOperations());
+                out.writeInt(inventory.getUpdateOperations());
+                out.writeInt(inventory.getDeleteOperations());
+                out.writeInt(inventory.getMovementOperations());
+
+                out.writeInt(brands.size());
+                for (String brand : brands) {
+                    writeString(out, brand);
+                }
+
+                out.writeInt(products.size());
+                for (Product product : products) {
+                    out.writeInt(product.getId());
+                    out.writeInt(brandCodes.get(product.getBrand()));
+                    out.writeDouble(product.getPrice());
+                    out.writeInt(product.getQuantity());
+                    out.writeInt(product.getAverageQuantity());
+                    writeString(out, product.getName());
+                }
+
+                ChangeHistory history = inventory.getHistory();
+                out.writeInt(history.size());
+                for (int i = 0; i < history.size(); i++) {
+                    writeEvent(out, history.get(i));
+                }
+
+                out.flush();
+                channel.force(false);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Загружает снимок в пустую модель. Возвращает эпоху снимка
+    // или 0, если файла нет.
+    public static long read(Path file, Inventory inventory) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+                throw new IOException("Файл не является снимком склада: " + file);
+            }
+            int version = buffer.getInt();
+            if (version != 1 && version != VERSION) {
+                throw new IOException("Неподдерживаемая версия снимка: " + version);
+            }
+            long epoch = buffer.getLong();
+            int nextId = buffer.getInt();
+            int addOperations = buffer.getInt();
+            int updateOperations = buffer.getInt();
+            int deleteOperations = buffer.getInt();
+            int movementOperations = version >= 2 ? buffer.getInt() : 0;
+
+            byte[] scratch = new byte[256];
+            String[] brands = new String[buffer.getInt()];
+            for (int i = 0; i < brands.length; i++) {
+                brands[i] = readString(buffer, scratch);
+            }
+
+            int productCount = buffer.getInt();
+            List<Product> products = new ArrayList<>(productCount);
+            for (int i = 0; i < productCount; i++) {
+                int id = buffer.getInt();
+                String brand = brands[buffer.getInt()];
+                double price = buffer.getDouble();
+                int quantity = buffer.getInt();
+                int averageQuantity = buffer.getInt();
+                String name = readString(buffer, scratch);
+                products.add(new Product(id, name, brand, price, quantity, averageQuantity));
+            }
+
+            int eventCount = buffer.getInt();
+            List<HistoryEvent> events = new ArrayList<>(eventCount);
+            for (int i = 0; i < eventCount; i++) {
+                events.add(readEvent(buffer, scratch));
+            }
+
+            inventory.restore(products, nextId, addOperations, updateOperations, deleteOperations, movementOperations, events);
+            return epoch;
+        } catch (RuntimeException e) {
+            // BufferUnderflowException и неверные номера брендов - признак поврежденного файла
+            throw new IOException("Снимок поврежден: " + file, e);
+        }
+    }
+
+    private static void writeEvent(DataOutputStream out, HistoryEvent event) throws IOException {
+        out.writeLong(event.getTimestamp());
+        out.writeByte(event.getOperation().ordinal());
+        out.writeInt(event.getProductId());
+        writeString(out, event.getProductName());
+        writeString(out, event.getNote());
+        out.writeInt(event.getChanges().size());
+        for (HistoryEvent.FieldChange change : event.getChanges()) {
+            writeString(out, change.getField());
+            writeString(out, change.getOldValue());
+            writeString(out, change.getNewValue());
+        }
+    }
+
+    private static HistoryEvent readEvent(MappedByteBuffer buffer, byte[] scratch) {
+        long timestamp = buffer.getLong();
+        HistoryEvent.Operation operation = HistoryEvent.Operation.values()[buffer.get()];
+        int productId = buffer.getInt();
+        String productName = readString(buffer, scratch);
+        String note = readString(buffer, scratch);
+        int changeCount = buffer.getInt();
+        List<HistoryEvent.FieldChange> changes = changeCount == 0 ? null : new ArrayList<>(changeCount);
+        for (int i = 0; i < changeCount; i++) {
+            changes.add(new HistoryEvent.FieldChange(readString(buffer, scratch),
+                    readString(buffer, scratch), readString(buffer, scratch)));
+        }
+        return new HistoryEvent(timestamp, operation, productId, productName, changes, note);
+    }
+
+    // Длина -1 обозначает null
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(MappedByteBuffer buffer, byte[] scratch) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = length <= scratch.length ? scratch : new byte[length];
+        buffer.get(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+}
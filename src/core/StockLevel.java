@@ -0,0 +1,18 @@
+package core;
+
+// Уровень запаса товара относительно его среднего количества
+public enum StockLevel {
+    ZERO, LOW, NORMAL, HIGH;
+
+    public static StockLevel of(int quantity, int averageQuantity) {
+        if (quantity == 0) {
+            return ZERO;
+        } else if (quantity < 0.5 * averageQuantity) {
+            return LOW;
+        } else if (quantity <= 1.5 * averageQuantity) {
+            return NORMAL;
+        } else {
+            return HIGH;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package core;
+
+// Движение остатка по одному товару: приход или расход заданного количества
+public class StockMovement {
+    private final int productId;
+    private final int quantity;
+    private final boolean receipt;
+
+    private StockMovement(int productId, int quantity, boolean receipt) {
+        this.productId = productId;
+        this.quantity = quantity;
+        this.receipt = receipt;
+    }
+
+    public static StockMovement receive(int productId, int quantity) {
+        return new StockMovement(productId, quantity, true);
+    }
+
+    public static StockMovement ship(int productId, int quantity) {
+        return new StockMovement(productId, quantity, false);
+    }
+
+    public int getProductId() { return productId; }
+    public int getQuantity() { return quantity; }
+    public boolean isReceipt() { return receipt; }
+
+    // Изменение остатка со знаком
+    public int getDelta() { return receipt ? quantity : -quantity; }
+
+    @Override
+    public String toString() {
+        return (receipt ? "приход" : "расход") + " #" + productId + ": " + quantity;
+    }
+}
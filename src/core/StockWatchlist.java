@@ -0,0 +1,89 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// Товары, которые пора заказать: остаток нулевой или ниже половины
+// среднего (StockLevel ZERO и LOW). Inventory обновляет набор при каждом
+// изменении товара, сравнивая уровень до и после, поэтому искать такие
+// товары обходом склада не нужно. Подписчики получают только переходы
+// через пороги, а не каждое движение остатка.
+public class StockWatchlist {
+
+    public interface Listener {
+        // Уровень товара сменился, и хотя бы один из уровней требует заказа.
+        // oldLevel == null - товар добавлен, newLevel == null - удален
+        void onLevelChanged(Product product, StockLevel oldLevel, StockLevel newLevel);
+        // Набор собран заново, например при загрузке файла или очистке
+        void onReset();
+    }
+
+    // Товар не переопределяет equals, поэтому набор сравнивает по ссылке;
+    // порядок - порядок попадания в набор
+    private final Set<Product> products = new LinkedHashSet<>();
+    private final List<Listener> listeners = new ArrayList<>();
+
+    public static boolean needsReorder(StockLevel level) {
+        return level == StockLevel.ZERO || level == StockLevel.LOW;
+    }
+
+    // Сколько заказать, чтобы остаток вернулся к среднему
+    public static int reorderQuantity(Product product) {
+        return Math.max(product.getAverageQuantity() - product.getQuantity(), 0);
+    }
+
+    void add(Product product) {
+        levelChanged(product, null, product.getStockLevel());
+    }
+
+    void remove(Product product) {
+        levelChanged(product, product.getStockLevel(), null);
+    }
+
+    // Вызывается после изменения количества или среднего количества
+    void update(Product product, StockLevel oldLevel) {
+        levelChanged(product, oldLevel, product.getStockLevel());
+    }
+
+    void reset(Collection<Product> all) {
+        products.clear();
+        for (Product product : all) {
+            if (needsReorder(product.getStockLevel())) {
+                products.add(product);
+            }
+        }
+        for (Listener listener : listeners) {
+            listener.onReset();
+        }
+    }
+
+    private void levelChanged(Product product, StockLevel oldLevel, StockLevel newLevel) {
+        if (oldLevel == newLevel) {
+            return;
+        }
+        boolean was = needsReorder(oldLevel);
+        boolean is = needsReorder(newLevel);
+        if (!was && !is) {
+            return;
+        }
+        if (!is) {
+            products.remove(product);
+        } else if (!was) {
+            products.add(product);
+        }
+        for (Listener listener : listeners) {
+            listener.onLevelChanged(product, oldLevel, newLevel);
+        }
+    }
+
+    public void addListener(Listener listener) { listeners.add(listener); }
+    public void removeListener(Listener listener) { listeners.remove(listener); }
+
+    public Collection<Product> getProducts() { return Collections.unmodifiableSet(products); }
+    public int size() { return products.size(); }
+    public boolean contains(Product product) { return products.contains(product); }
+}
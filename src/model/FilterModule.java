@@ -1,32 +1,66 @@
 package model;
 
+import core.Product;
+import core.ProductFilter;
+import core.SearchIndex;
+
+import java.util.function.Predicate;
+
 public class FilterModule {
     private final InventoryModel inventoryModel;
     private int minQuantity = 0;
     private boolean showZeroQuantity = true;
     private String searchText = "";
+    private Predicate<Product> searchPredicate;
 
     public FilterModule(InventoryModel inventoryModel) {
         this.inventoryModel = inventoryModel;
     }
 
     public void setMinQuantity(int minQuantity) {
+        if (this.minQuantity == minQuantity) {
+            return;
+        }
         this.minQuantity = minQuantity;
         applyFilters();
     }
 
     public void setShowZeroQuantity(boolean showZeroQuantity) {
+        if (this.showZeroQuantity == showZeroQuantity) {
+            return;
+        }
         this.showZeroQuantity = showZeroQuantity;
         applyFilters();
     }
 
     public void setSearchText(String searchText) {
-        this.searchText = searchText;
+        String normalized = normalize(searchText);
+        if (this.searchText.equals(normalized)) {
+            return;
+        }
+        this.searchText = normalized;
+        searchPredicate = inventoryModel.searchMatcher(normalized.isEmpty() ? null : normalized);
         applyFilters();
     }
 
+    // Применяет результат поиска, подготовленный в фоновом потоке
+    public void setSearchResult(String searchText, SearchIndex.Result result) {
+        String normalized = normalize(searchText);
+        if (normalized.isEmpty()) {
+            setSearchText(normalized);
+            return;
+        }
+        this.searchText = normalized;
+        searchPredicate = inventoryModel.searchMatcher(result);
+        applyFilters();
+    }
+
+    private static String normalize(String searchText) {
+        return searchText == null || searchText.trim().isEmpty() ? "" : searchText;
+    }
+
+    // Все активные условия собираются в один предикат, который применяется один раз
     private void applyFilters() {
-        inventoryModel.setQuantityFilter(minQuantity, showZeroQuantity);
-        inventoryModel.setNameFilter(searchText);
+        inventoryModel.setFilter(ProductFilter.of(minQuantity, showZeroQuantity, searchPredicate));
     }
-}
\ No newline at end of file
+}
@@ -1,197 +1,150 @@
 package model;
 
-import javafx.collections.FXCollections;
+import core.*;
 import javafx.collections.ObservableList;
 import javafx.collections.transformation.FilteredList;
 import javafx.collections.transformation.SortedList;
 
-import java.util.*;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Predicate;
 
-public class InventoryModel {
-    private final ObservableList<Product> productList;
+// Представление ядра склада для JavaFX: наблюдаемый список товаров с
+// фильтрацией и сортировкой для таблицы и список товаров к заказу. Все
+// операции выполняет Inventory, а списки повторяют его изменения через
+// Inventory.Listener и StockWatchlist.Listener.
+public class InventoryModel implements Inventory.Listener {
+    private final Inventory inventory;
+    private final ProductList productList;
     private final FilteredList<Product> filteredProducts;
     private final SortedList<Product> sortedProducts;
-    private int nextId = 1;
+    private final ReorderList reorderProducts;
 
-    private final StringBuilder changeHistory;
-
-    private int addOperations = 0;
-    private int updateOperations = 0;
-    private int deleteOperations = 0;
-
-    public InventoryModel() {
-        this.productList = FXCollections.observableArrayList();
+    private InventoryModel(Inventory inventory) {
+        this.inventory = inventory;
+        this.productList = new ProductList();
         this.filteredProducts = new FilteredList<>(productList);
         this.sortedProducts = new SortedList<>(filteredProducts);
-        this.changeHistory = new StringBuilder();
+        productList.setAll(inventory.getProducts());
+        this.reorderProducts = ReorderList.of(inventory.getWatchlist());
     }
 
-    public boolean addProduct(String name, String brand, double price, int quantity, int averageQuantity) {
-        if (!isNameBrandUnique(name, brand)) {
-            return false;
-        }
-
-        if (price < 0 || quantity < 0 || averageQuantity < 0) {
-            return false;
-        }
+    public static InventoryModel of() {
+        return of(new Inventory());
+    }
 
-        Product product = new Product(nextId++, name, brand, price, quantity, averageQuantity);
-        productList.add(product);
+    // Подписка на склад - после конструктора, когда списки уже готовы
+    public static InventoryModel of(Inventory inventory) {
+        InventoryModel model = new InventoryModel(inventory);
+        inventory.addListener(model);
+        return model;
+    }
 
-        String timestamp = java.time.LocalTime.now().format(java.time.format.DateTimeFormatter.ofPattern("HH:mm"));
-        changeHistory.append(timestamp).append(" создан товар: ").append(name).append("\n");
+    public Inventory getInventory() { return inventory; }
 
-        addOperations++;
-        return true;
+    public boolean addProduct(String name, String brand, double price, int quantity, int averageQuantity) {
+        return inventory.addProduct(name, brand, price, quantity, averageQuantity);
     }
 
     public boolean updateProduct(Product oldProduct, String newName, String newBrand,
                                  double newPrice, int newQuantity, int newAverageQuantity) {
-        if (!isNameBrandUnique(newName, newBrand, oldProduct)) {
-            return false;
-        }
-
-        if (newPrice < 0 || newQuantity < 0 || newAverageQuantity < 0) {
-            return false;
-        }
-
-        StringBuilder changes = new StringBuilder();
-
-        if (!oldProduct.getName().equals(newName)) {
-            changes.append("имя: ").append(oldProduct.getName()).append(" -> ").append(newName).append(", ");
-        }
-        if (!oldProduct.getBrand().equals(newBrand)) {
-            changes.append("бренд: ").append(oldProduct.getBrand()).append(" -> ").append(newBrand).append(", ");
-        }
-        if (oldProduct.getPrice() != newPrice) {
-            changes.append("цена: ").append(oldProduct.getPrice()).append(" -> ").append(newPrice).append(", ");
-        }
-        if (oldProduct.getQuantity() != newQuantity) {
-            changes.append("количество: ").append(oldProduct.getQuantity()).append(" -> ").append(newQuantity).append(", ");
-        }
-        if (oldProduct.getAverageQuantity() != newAverageQuantity) {
-            changes.append("СрКол: ").append(oldProduct.getAverageQuantity()).append(" -> ").append(newAverageQuantity).append(", ");
-        }
-
-        String changesStr = changes.toString();
-        if (changesStr.endsWith(", ")) {
-            changesStr = changesStr.substring(0, changesStr.length() - 2);
-        }
-
-        oldProduct.setName(newName);
-        oldProduct.setBrand(newBrand);
-        oldProduct.setPrice(newPrice);
-        oldProduct.setQuantity(newQuantity);
-        oldProduct.setAverageQuantity(newAverageQuantity);
-
-        String timestamp = java.time.LocalTime.now().format(java.time.format.DateTimeFormatter.ofPattern("HH:mm"));
-        changeHistory.append(timestamp).append(" изменен товар ").append(oldProduct.getName())
-                .append(": ").append(changesStr).append("\n");
-
-        updateOperations++;
-        return true;
+        return inventory.updateProduct(oldProduct, newName, newBrand, newPrice, newQuantity, newAverageQuantity);
     }
 
-
     public boolean removeProduct(Product product) {
-        boolean removed = productList.remove(product);
-        if (removed) {
-            String timestamp = java.time.LocalTime.now().format(java.time.format.DateTimeFormatter.ofPattern("HH:mm"));
-            changeHistory.append(timestamp).append(" удален товар: ").append(product.getName()).append("\n");
+        return inventory.removeProduct(product);
+    }
 
-            deleteOperations++;
-        }
-        return removed;
+    public boolean receive(int productId, int quantity) {
+        return inventory.receive(productId, quantity);
+    }
+
+    public boolean ship(int productId, int quantity) {
+        return inventory.ship(productId, quantity);
     }
 
+    public List<StockMovement> applyMovements(List<StockMovement> movements) {
+        return inventory.applyMovements(movements);
+    }
 
     public Product findProductByName(String name) {
-        return productList.stream()
-                .filter(p -> p.getName().equalsIgnoreCase(name))
-                .findFirst()
-                .orElse(null);
+        return inventory.findProductByName(name);
     }
 
+    public Product findProductById(int id) {
+        return inventory.findProductById(id);
+    }
 
-    private boolean isNameBrandUnique(String name, String brand) {
-        return productList.stream()
-                .noneMatch(p -> p.getName().equalsIgnoreCase(name) && p.getBrand().equalsIgnoreCase(brand));
+    public void clearProducts() {
+        inventory.clearProducts();
     }
 
-    private boolean isNameBrandUnique(String name, String brand, Product excludeProduct) {
-        return productList.stream()
-                .filter(p -> p != excludeProduct)
-                .noneMatch(p -> p.getName().equalsIgnoreCase(name) && p.getBrand().equalsIgnoreCase(brand));
+    public boolean loadProductFromFile(int id, String name, String brand, double price, int quantity, int averageQuantity) {
+        return inventory.loadProductFromFile(id, name, brand, price, quantity, averageQuantity);
+    }
+
+    public List<Product> importProducts(List<Product> products, boolean replaceExisting) {
+        return inventory.importProducts(products, replaceExisting);
     }
 
     public ObservableList<Product> getProductList() { return productList; }
     public SortedList<Product> getSortedProducts() { return sortedProducts; }
     public FilteredList<Product> getFilteredProducts() { return filteredProducts; }
-    public String getChangeHistory() { return changeHistory.toString(); }
+    public ReorderList getReorderProducts() { return reorderProducts; }
+    public String getChangeHistory() { return inventory.getChangeHistory(); }
+    public ChangeHistory getHistory() { return inventory.getHistory(); }
+    public Map<String, Object> getStatistics() { return inventory.getStatistics(); }
 
 
-    public void setQuantityFilter(int minQuantity, boolean showZeroQuantity) {
-        Predicate<Product> filter = product -> {
-            boolean quantityCondition = product.getQuantity() >= minQuantity;
-            boolean zeroCondition = showZeroQuantity || product.getQuantity() > 0;
-            return quantityCondition && zeroCondition;
-        };
+    public void setFilter(Predicate<Product> filter) {
+        long start = System.nanoTime();
         filteredProducts.setPredicate(filter);
+        Metrics.FILTER.recordSince(start);
     }
 
-    public void setNameFilter(String searchText) {
-        if (searchText == null || searchText.trim().isEmpty()) {
-            filteredProducts.setPredicate(null);
-        } else {
-            String lowerCaseFilter = searchText.toLowerCase();
-            filteredProducts.setPredicate(product ->
-                    product.getName().toLowerCase().contains(lowerCaseFilter));
-        }
+    public Predicate<Product> searchMatcher(String searchText) {
+        return inventory.searchMatcher(searchText);
     }
 
-
-    public Map<String, Object> getStatistics() {
-        Map<String, Object> stats = new HashMap<>();
-        stats.put("totalProducts", productList.size());
-
-        long uniqueNames = productList.stream()
-                .map(Product::getName)
-                .distinct()
-                .count();
-        stats.put("uniqueNames", uniqueNames);
-
-        double avgProductsPerName = productList.size() / (double) Math.max(uniqueNames, 1);
-        stats.put("avgProductsPerName", String.format("%.2f", avgProductsPerName));
-
-        stats.put("addOperations", addOperations);
-        stats.put("updateOperations", updateOperations);
-        stats.put("deleteOperations", deleteOperations);
-
-        return stats;
+    public SearchIndex.Result prepareSearch(String searchText) {
+        return inventory.prepareSearch(searchText);
     }
 
+    public SearchIndex.Result prepareSearch(String searchText, int limit) {
+        return inventory.prepareSearch(searchText, limit);
+    }
 
-    public boolean loadProductFromFile(int id, String name, String brand, double price, int quantity, int averageQuantity) {
-        if (!isNameBrandUnique(name, brand)) {
-            return false;
-        }
+    public Predicate<Product> searchMatcher(SearchIndex.Result result) {
+        return inventory.searchMatcher(result);
+    }
 
-        if (price < 0 || quantity < 0 || averageQuantity < 0) {
-            return false;
-        }
 
-        if (id >= nextId) {
-            nextId = id + 1;
+    @Override
+    public void onAdded(List<Product> added) {
+        if (added.size() == 1) {
+            productList.add(added.get(0));
+        } else {
+            productList.addAll(added);
         }
+    }
 
-        Product product = new Product(id, name, brand, price, quantity, averageQuantity);
-        productList.add(product);
+    @Override
+    public void onUpdated(List<Product> updated) {
+        productList.markUpdated(updated);
+        reorderProducts.markUpdated(updated);
+    }
 
-        String timestamp = java.time.LocalTime.now().format(java.time.format.DateTimeFormatter.ofPattern("HH:mm"));
-        changeHistory.append(timestamp).append(" создан товар: ").append(name).append("\n");
+    @Override
+    public void onRemoved(Product product) {
+        productList.remove(product);
+    }
 
-        addOperations++;
-        return true;
+    @Override
+    public void onReplaced(List<Product> products) {
+        if (products.isEmpty()) {
+            productList.clear();
+        } else {
+            productList.setAll(products);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,204 @@
+package model;
+
+import core.Metrics;
+import core.Product;
+import core.ProductStore;
+import javafx.collections.ObservableListBase;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+// Результат запроса к каталогу на диске в виде списка для таблицы. Товары
+// читаются страницами и хранятся в LRU-кэше, поэтому память ограничена
+// кэшем, а не размером каталога. Все чтение идет в фоновом потоке: для
+// страницы, которой нет в кэше, get() сразу отдает LOADING, а когда
+// страница прочитана, список в потоке JavaFX сообщает об обновлении ее
+// строк, и таблица их перерисовывает. Следующие страницы по направлению
+// прокрутки загружаются заранее.
+// Список неизменяемый: новый запрос дает новый список.
+public class PagedProductList extends ObservableListBase<Product> implements Closeable {
+    static final int PAGE_SIZE = 256;
+    static final int CACHE_PAGES = 64;
+    static final int PREFETCH_PAGES = 4;
+
+    // Строка страницы, которая еще читается; таблица показывает ее пустой
+    public static final Product LOADING = new Product(0, "", "", 0, 0, 0);
+
+    private final ProductStore store;
+    private final ProductStore.View view;
+    private final Executor pageExecutor;
+    private final Executor fxExecutor;
+
+    // Кэш, наборы страниц и lastPage общие с потоком чтения страниц
+    private final Map<Integer, Product[]> pages = new LinkedHashMap<>(CACHE_PAGES * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Product[]> eldest) {
+            return size() > CACHE_PAGES;
+        }
+    };
+    private final Set<Integer> loading = new HashSet<>();
+    // Страницы, вместо строк которых таблица получила LOADING
+    private final Set<Integer> waiting = new HashSet<>();
+    private int lastPage = -1;
+    private volatile boolean closed;
+
+    public PagedProductList(ProductStore store, ProductStore.View view, Executor pageExecutor, Executor fxExecutor) {
+        this.store = store;
+        this.view = view;
+        this.pageExecutor = pageExecutor;
+        this.fxExecutor = fxExecutor;
+    }
+
+    @Override
+    public Product get(int index) {
+        if (index < 0 || index >= view.size()) {
+            throw new IndexOutOfBoundsException("Строка " + index + " вне диапазона 0.." + (view.size() - 1));
+        }
+        int page = index / PAGE_SIZE;
+        Product[] products;
+        int previous;
+        boolean load = false;
+        synchronized (pages) {
+            previous = lastPage;
+            lastPage = page;
+            products = pages.get(page);
+            if (products == null) {
+                waiting.add(page);
+                load = loading.add(page);
+            }
+        }
+        if (page != previous) {
+            prefetchFrom(page, page > previous ? 1 : -1);
+        }
+        // После close() исполнитель страниц уже может быть остановлен
+        if (load && !closed) {
+            pageExecutor.execute(() -> load(page));
+        }
+        return products == null ? LOADING : products[index % PAGE_SIZE];
+    }
+
+    @Override
+    public int size() {
+        return view.size();
+    }
+
+    // Поиск по всему списку прочитал бы каталог целиком, поэтому товар
+    // ищется только среди загруженных страниц
+    @Override
+    public int indexOf(Object o) {
+        synchronized (pages) {
+            for (Map.Entry<Integer, Product[]> entry : pages.entrySet()) {
+                Product[] products = entry.getValue();
+                for (int i = 0; i < products.length; i++) {
+                    if (products[i].equals(o)) {
+                        return entry.getKey() * PAGE_SIZE + i;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        synchronized (pages) {
+            pages.clear();
+        }
+        view.close();
+    }
+
+    private void cachePage(int page, Product[] products) {
+        synchronized (pages) {
+            if (!closed) {
+                pages.put(page, products);
+            }
+        }
+    }
+
+    private Product[] loadPage(int page) throws IOException {
+        long start = System.nanoTime();
+        int from = page * PAGE_SIZE;
+        int count = Math.min(PAGE_SIZE, view.size() - from);
+        int[] rows = new int[count];
+        Product[] products = new Product[count];
+        view.rows(from, count, rows);
+        store.read(rows, count, products);
+        Metrics.CATALOG_PAGE.recordSince(start);
+        return products;
+    }
+
+    // Предзагрузка запускается при переходе на другую страницу, в ту же
+    // сторону, куда двигалась прокрутка
+    private void prefetchFrom(int page, int direction) {
+        int pageCount = (view.size() + PAGE_SIZE - 1) / PAGE_SIZE;
+        for (int i = 1; i <= PREFETCH_PAGES; i++) {
+            int next = page + direction * i;
+            if (next < 0 || next >= pageCount) {
+                break;
+            }
+            synchronized (pages) {
+                if (pages.containsKey(next) || !loading.add(next)) {
+                    continue;
+                }
+            }
+            if (!closed) {
+                pageExecutor.execute(() -> load(next));
+            }
+        }
+    }
+
+    private void load(int page) {
+        try {
+            // Пока задача ждала в очереди, таблицу могли прокрутить далеко;
+            // если к странице вернутся, get() запросит ее снова
+            synchronized (pages) {
+                if (closed || Math.abs(page - lastPage) > PREFETCH_PAGES) {
+                    waiting.remove(page);
+                    return;
+                }
+            }
+            cachePage(page, loadPage(page));
+            fxExecutor.execute(() -> pageLoaded(page));
+        } catch (IOException e) {
+            if (!closed) {
+                Metrics.error("Не удалось прочитать страницу каталога: " + e.getMessage());
+            }
+        } finally {
+            synchronized (pages) {
+                loading.remove(page);
+            }
+        }
+    }
+
+    // Поток JavaFX: строки, показанные как LOADING, получают свои товары
+    private void pageLoaded(int page) {
+        synchronized (pages) {
+            if (closed || !waiting.remove(page)) {
+                return;
+            }
+        }
+        int from = page * PAGE_SIZE;
+        int to = Math.min(from + PAGE_SIZE, view.size());
+        beginChange();
+        for (int i = from; i < to; i++) {
+            nextUpdate(i);
+        }
+        endChange();
+    }
+}
@@ -0,0 +1,166 @@
+package model;
+
+import core.Metrics;
+import core.ProductOrder.Column;
+import core.ProductOrder.SortKey;
+import core.ProductStore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+// Каталог товаров на диске для таблицы, только для чтения. Сортировка и
+// отбор выполняются в ProductStore в фоновом потоке: первый запрос с новым
+// порядком строит индекс по всему каталогу. Применяется только результат
+// последнего запроса, прежние отменяются.
+//
+// Потоки чтения не прерываются: прерывание закрыло бы FileChannel каталога.
+// Поэтому close() их только останавливает, а каталог закрывается в
+// отдельном потоке, когда они закончат; поток JavaFX этого не ждет.
+public class ProductCatalog implements Closeable {
+    private final ProductStore store;
+    private final Executor fxExecutor;
+    private final Consumer<PagedProductList> listener;
+    private final ExecutorService queryExecutor;
+    private final ExecutorService pageExecutor;
+    private final AtomicLong generation = new AtomicLong();
+    private final CompletableFuture<Void> closed = new CompletableFuture<>();
+
+    // Все поля ниже используются только в потоке JavaFX
+    private List<SortKey> sortKeys = List.of(SortKey.ascending(Column.ID));
+    private int minQuantity = 0;
+    private boolean showZeroQuantity = true;
+    private String searchText = "";
+    private PagedProductList products;
+
+    // listener получает новый список товаров через fxExecutor
+    public ProductCatalog(ProductStore store, Executor fxExecutor, Consumer<PagedProductList> listener)
+            throws IOException {
+        this.store = store;
+        this.fxExecutor = fxExecutor;
+        this.listener = listener;
+        this.queryExecutor = Executors.newSingleThreadExecutor(
+                Thread.ofPlatform().name("catalog-query").daemon().factory());
+        this.pageExecutor = Executors.newSingleThreadExecutor(
+                Thread.ofPlatform().name("catalog-pages").daemon().factory());
+        this.products = new PagedProductList(store, store.allRows(), pageExecutor, fxExecutor);
+    }
+
+    public PagedProductList getProducts() { return products; }
+    public int size() { return store.size(); }
+
+    // Завершается, когда потоки каталога остановлены и его файлы закрыты
+    public CompletableFuture<Void> whenClosed() { return closed; }
+
+    public void setSorting(List<SortKey> sortKeys) {
+        if (this.sortKeys.equals(sortKeys)) {
+            return;
+        }
+        this.sortKeys = List.copyOf(sortKeys);
+        submitQuery();
+    }
+
+    public void setMinQuantity(int minQuantity) {
+        if (this.minQuantity == minQuantity) {
+            return;
+        }
+        this.minQuantity = minQuantity;
+        submitQuery();
+    }
+
+    public void setShowZeroQuantity(boolean showZeroQuantity) {
+        if (this.showZeroQuantity == showZeroQuantity) {
+            return;
+        }
+        this.showZeroQuantity = showZeroQuantity;
+        submitQuery();
+    }
+
+    public void setSearchText(String searchText) {
+        String normalized = searchText == null || searchText.trim().isEmpty() ? "" : searchText;
+        if (this.searchText.equals(normalized)) {
+            return;
+        }
+        this.searchText = normalized;
+        submitQuery();
+    }
+
+    private void submitQuery() {
+        long requestGeneration = generation.incrementAndGet();
+        BooleanSupplier cancelled = () -> generation.get() != requestGeneration;
+        List<SortKey> keys = sortKeys;
+        int min = minQuantity;
+        boolean showZero = showZeroQuantity;
+        String search = searchText;
+
+        queryExecutor.execute(() -> {
+            if (cancelled.getAsBoolean()) {
+                return;
+            }
+            try {
+                ProductStore.View view = store.query(keys, min, showZero, search, cancelled);
+                if (view == null) {
+                    return;
+                }
+                PagedProductList result = new PagedProductList(store, view, pageExecutor, fxExecutor);
+                fxExecutor.execute(() -> apply(result, cancelled));
+            } catch (IOException e) {
+                if (!cancelled.getAsBoolean()) {
+                    Metrics.error("Не удалось выполнить запрос к каталогу: " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    private void apply(PagedProductList result, BooleanSupplier cancelled) {
+        if (cancelled.getAsBoolean()) {
+            closeQuietly(result);
+            return;
+        }
+        PagedProductList previous = products;
+        products = result;
+        listener.accept(result);
+        closeQuietly(previous);
+    }
+
+    // Поток JavaFX. Список перестает читать страницы сразу, а каталог
+    // закрывается, когда запрос и чтение страницы закончат текущий блок.
+    // Поток закрытия не фоновый: при выходе JVM дождется удаления файлов.
+    @Override
+    public void close() {
+        generation.incrementAndGet();
+        closeQuietly(products);
+        queryExecutor.shutdown();
+        pageExecutor.shutdown();
+        Thread.ofPlatform().name("catalog-close").start(() -> {
+            try {
+                queryExecutor.awaitTermination(5, TimeUnit.SECONDS);
+                pageExecutor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                store.close();
+            } catch (IOException e) {
+                Metrics.error("Не удалось закрыть каталог: " + e.getMessage());
+            }
+            closed.complete(null);
+        });
+    }
+
+    private static void closeQuietly(PagedProductList list) {
+        try {
+            list.close();
+        } catch (IOException e) {
+            Metrics.error("Не удалось удалить временный файл каталога: " + e.getMessage());
+        }
+    }
+}
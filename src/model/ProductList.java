@@ -0,0 +1,119 @@
+package model;
+
+import core.Product;
+import javafx.collections.ModifiableObservableListBase;
+
+import java.util.*;
+
+// Наблюдаемый список товаров, который умеет сообщать об изменении
+// отдельного товара. FilteredList и SortedList на такое событие
+// пересчитывают только измененную строку, а не весь список.
+public class ProductList extends ModifiableObservableListBase<Product> {
+    private final ArrayList<Product> items = new ArrayList<>();
+
+    @Override
+    public Product get(int index) {
+        return items.get(index);
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+
+    @Override
+    protected void doAdd(int index, Product element) {
+        items.add(index, element);
+    }
+
+    @Override
+    protected Product doSet(int index, Product element) {
+        return items.set(index, element);
+    }
+
+    @Override
+    protected Product doRemove(int index) {
+        return items.remove(index);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i) == o) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Product> c) {
+        if (c.isEmpty()) {
+            return false;
+        }
+        beginChange();
+        int from = items.size();
+        items.addAll(c);
+        nextAdd(from, items.size());
+        modCount++;
+        endChange();
+        return true;
+    }
+
+    @Override
+    public boolean setAll(Collection<? extends Product> col) {
+        if (items.isEmpty() && col.isEmpty()) {
+            return false;
+        }
+        beginChange();
+        List<Product> removed = new ArrayList<>(items);
+        items.clear();
+        items.addAll(col);
+        nextReplace(0, items.size(), removed);
+        modCount++;
+        endChange();
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        if (items.isEmpty()) {
+            return;
+        }
+        beginChange();
+        nextRemove(0, new ArrayList<>(items));
+        items.clear();
+        modCount++;
+        endChange();
+    }
+
+    // Одно изменение списка на всю пачку измененных товаров; позиции
+    // находятся одним проходом по списку
+    public void markUpdated(Collection<Product> products) {
+        if (products.size() == 1) {
+            markUpdated(products.iterator().next());
+            return;
+        }
+        Set<Product> updated = Collections.newSetFromMap(new IdentityHashMap<>());
+        updated.addAll(products);
+        beginChange();
+        for (int i = 0; i < items.size(); i++) {
+            if (updated.contains(items.get(i))) {
+                nextUpdate(i);
+            }
+        }
+        endChange();
+    }
+
+    // Сообщает подписчикам, что поля товара изменились
+    public boolean markUpdated(Product product) {
+        int index = indexOf(product);
+        if (index < 0) {
+            return false;
+        }
+        beginChange();
+        nextUpdate(index);
+        endChange();
+        return true;
+    }
+}
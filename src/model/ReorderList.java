@@ -0,0 +1,132 @@
+package model;
+
+import core.Product;
+import core.StockLevel;
+import core.StockWatchlist;
+import javafx.collections.ObservableListBase;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Наблюдаемый список товаров к заказу, повторяет StockWatchlist. Порядок
+// не важен (таблица сортирует список сама), поэтому товар добавляется в
+// конец, а удаляется переносом последнего товара на его место: при частых
+// движениях остатка обе операции не зависят от длины списка.
+public class ReorderList extends ObservableListBase<Product> implements StockWatchlist.Listener {
+    private final StockWatchlist watchlist;
+    private final List<Product> items = new ArrayList<>();
+    private final Map<Product, Integer> positions = new IdentityHashMap<>();
+
+    private ReorderList(StockWatchlist watchlist) {
+        this.watchlist = watchlist;
+        for (Product product : watchlist.getProducts()) {
+            positions.put(product, items.size());
+            items.add(product);
+        }
+    }
+
+    // Подписка на список к заказу - после конструктора, когда список уже готов
+    public static ReorderList of(StockWatchlist watchlist) {
+        ReorderList list = new ReorderList(watchlist);
+        watchlist.addListener(list);
+        return list;
+    }
+
+    @Override
+    public Product get(int index) {
+        return items.get(index);
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        Integer index = positions.get(o);
+        return index == null ? -1 : index;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return positions.containsKey(o);
+    }
+
+    @Override
+    public void onLevelChanged(Product product, StockLevel oldLevel, StockLevel newLevel) {
+        boolean was = positions.containsKey(product);
+        boolean is = StockWatchlist.needsReorder(newLevel);
+        if (is && !was) {
+            append(product);
+        } else if (!is && was) {
+            removeProduct(product);
+        } else if (is) {
+            markUpdated(product);
+        }
+    }
+
+    @Override
+    public void onReset() {
+        List<Product> removed = new ArrayList<>(items);
+        items.clear();
+        positions.clear();
+        for (Product product : watchlist.getProducts()) {
+            positions.put(product, items.size());
+            items.add(product);
+        }
+        if (removed.isEmpty() && items.isEmpty()) {
+            return;
+        }
+        beginChange();
+        nextReplace(0, items.size(), removed);
+        endChange();
+    }
+
+    // Поля товаров изменились без перехода через порог, например остаток
+    // уменьшился, но товар и так был в списке
+    public void markUpdated(Collection<Product> products) {
+        beginChange();
+        for (Product product : products) {
+            Integer index = positions.get(product);
+            if (index != null) {
+                nextUpdate(index);
+            }
+        }
+        endChange();
+    }
+
+    private void markUpdated(Product product) {
+        beginChange();
+        nextUpdate(positions.get(product));
+        endChange();
+    }
+
+    private void append(Product product) {
+        int index = items.size();
+        positions.put(product, index);
+        items.add(product);
+        beginChange();
+        nextAdd(index, index + 1);
+        endChange();
+    }
+
+    private void removeProduct(Product product) {
+        int index = positions.remove(product);
+        int lastIndex = items.size() - 1;
+        Product last = items.remove(lastIndex);
+        beginChange();
+        if (index == lastIndex) {
+            nextRemove(index, product);
+        } else {
+            items.set(index, last);
+            positions.put(last, index);
+            nextSet(index, product);
+            nextRemove(lastIndex, last);
+        }
+        endChange();
+    }
+}
@@ -1,33 +1,58 @@
 package model;
 
+import core.Metrics;
+import core.Product;
+import core.ProductOrder;
+import core.ProductOrder.Column;
+import core.ProductOrder.SortKey;
 import javafx.collections.transformation.SortedList;
-import java.util.Comparator;
 
+import java.util.Arrays;
+import java.util.List;
+
+// Применяет порядок ProductOrder к отсортированному списку таблицы и
+// сопоставляет пунктам меню сортировки наборы ключей.
 public class SortingModule {
+
     private final SortedList<Product> sortedProducts;
+    private final ProductOrder order;
 
     public SortingModule(SortedList<Product> sortedProducts) {
         this.sortedProducts = sortedProducts;
+        this.order = new ProductOrder();
     }
 
     public void setSorting(String sortType) {
+        setSorting(keysFor(sortType));
+    }
+
+    // Ключи сортировки для пункта меню; их же использует каталог на диске
+    public static List<SortKey> keysFor(String sortType) {
         switch (sortType) {
             case "По имени":
-                sortedProducts.setComparator(Comparator.comparing(Product::getName));
-                break;
+                return List.of(SortKey.ascending(Column.NAME));
             case "По количеству":
-                sortedProducts.setComparator(Comparator.comparing(Product::getQuantity).reversed());
-                break;
+                return List.of(SortKey.descending(Column.QUANTITY));
             case "По цене":
-                sortedProducts.setComparator(Comparator.comparing(Product::getPrice).reversed());
-                break;
+                return List.of(SortKey.descending(Column.PRICE));
             case "По бренду":
-                sortedProducts.setComparator(Comparator.comparing(Product::getBrand));
-                break;
+                return List.of(SortKey.ascending(Column.BRAND));
+            case "По бренду и цене":
+                return List.of(SortKey.ascending(Column.BRAND), SortKey.descending(Column.PRICE));
             case "По ID":
             default:
-                sortedProducts.setComparator(Comparator.comparing(Product::getId));
-                break;
+                return List.of(SortKey.ascending(Column.ID));
         }
     }
-}
\ No newline at end of file
+
+    public void setSorting(SortKey... keys) {
+        setSorting(Arrays.asList(keys));
+    }
+
+    public void setSorting(List<SortKey> keys) {
+        long start = System.nanoTime();
+        order.prepareKeys(keys, sortedProducts.getSource());
+        sortedProducts.setComparator(order.comparator(keys));
+        Metrics.SORT.recordSince(start);
+    }
+}
@@ -0,0 +1,80 @@
+package view;
+
+import core.Prices;
+
+import java.text.DecimalFormatSymbols;
+
+// Строки для числовых ячеек таблицы. При прокрутке одни и те же значения
+// показываются снова и снова, поэтому готовая строка хранится в кэше с
+// прямой адресацией по значению и создается только при промахе.
+// Используется только из потока JavaFX.
+final class CellText {
+    private static final int BITS = 14;
+    private static final int SIZE = 1 << BITS;
+    private static final String CURRENCY = " руб.";
+
+    // Цена выводится как String.format("%.2f руб."), с разделителем текущей локали
+    private static final DecimalFormatSymbols SYMBOLS = DecimalFormatSymbols.getInstance();
+
+    private static final CellText NUMBERS = new CellText();
+    private static final CellText PRICES = new CellText();
+
+    private final long[] keys = new long[SIZE];
+    private final String[] values = new String[SIZE];
+
+    private CellText() {
+    }
+
+    static String ofInt(int value) {
+        String text = NUMBERS.get(value);
+        if (text == null) {
+            text = Integer.toString(value);
+            NUMBERS.put(value, text);
+        }
+        return text;
+    }
+
+    static String ofPrice(double price) {
+        long cents = Prices.toCents(price);
+        if (cents == Long.MIN_VALUE || SYMBOLS.getZeroDigit() != '0') {
+            return String.format("%.2f руб.", price);
+        }
+        String text = PRICES.get(cents);
+        if (text == null) {
+            text = formatCents(cents);
+            PRICES.put(cents, text);
+        }
+        return text;
+    }
+
+    private static String formatCents(long cents) {
+        StringBuilder text = new StringBuilder(24);
+        if (cents < 0) {
+            text.append('-');
+            cents = -cents;
+        }
+        long fraction = cents % 100;
+        text.append(cents / 100).append(SYMBOLS.getDecimalSeparator());
+        if (fraction < 10) {
+            text.append('0');
+        }
+        return text.append(fraction).append(CURRENCY).toString();
+    }
+
+    private String get(long key) {
+        int slot = slotOf(key);
+        String value = values[slot];
+        return value != null && keys[slot] == key ? value : null;
+    }
+
+    private void put(long key, String value) {
+        int slot = slotOf(key);
+        keys[slot] = key;
+        values[slot] = value;
+    }
+
+    private static int slotOf(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> (64 - BITS));
+    }
+}
@@ -0,0 +1,111 @@
+package view;
+
+import controller.MainController;
+import core.LatencyHistogram;
+import core.Metrics;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.collections.FXCollections;
+import javafx.geometry.Insets;
+import javafx.scene.control.*;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.util.Duration;
+
+import java.util.function.ToLongFunction;
+
+// Содержимое вкладки диагностики: длительности операций из Metrics,
+// скорость загрузки и сохранения CSV и последние ошибки. Пока вкладка
+// открыта, значения обновляются раз в секунду.
+public class DiagnosticsView extends VBox {
+    private static final Duration REFRESH_INTERVAL = Duration.seconds(1);
+
+    private final TableView<LatencyHistogram> timingsTable;
+    private final Label csvLoadLabel;
+    private final Label csvSaveLabel;
+    private final Label errorsLabel;
+    private final ListView<String> errorsList;
+    private Timeline refreshTimeline;
+
+    private DiagnosticsView() {
+        super(10);
+
+        timingsTable = new TableView<>(FXCollections.observableArrayList(Metrics.getHistograms()));
+        timingsTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY_FLEX_LAST_COLUMN);
+        TableColumn<LatencyHistogram, String> nameColumn = new TableColumn<>("Операция");
+        nameColumn.setCellValueFactory(data -> new ReadOnlyStringWrapper(data.getValue().getName()));
+        nameColumn.setPrefWidth(260);
+        TableColumn<LatencyHistogram, Long> countColumn = new TableColumn<>("Вызовов");
+        countColumn.setCellValueFactory(data -> new ReadOnlyObjectWrapper<>(data.getValue().getCount()));
+        timingsTable.getColumns().add(nameColumn);
+        timingsTable.getColumns().add(countColumn);
+        timingsTable.getColumns().add(timeColumn("Среднее", LatencyHistogram::getMeanNanos));
+        timingsTable.getColumns().add(timeColumn("p50", histogram -> histogram.getPercentileNanos(50)));
+        timingsTable.getColumns().add(timeColumn("p90", histogram -> histogram.getPercentileNanos(90)));
+        timingsTable.getColumns().add(timeColumn("p99", histogram -> histogram.getPercentileNanos(99)));
+        timingsTable.getColumns().add(timeColumn("Макс", LatencyHistogram::getMaxNanos));
+        timingsTable.setPrefHeight(360);
+
+        csvLoadLabel = new Label();
+        csvSaveLabel = new Label();
+        errorsLabel = new Label();
+        errorsList = new ListView<>();
+        VBox.setVgrow(errorsList, Priority.ALWAYS);
+    }
+
+    // Обработчики кнопок и таймер ссылаются на вкладку, поэтому подключаются
+    // после конструктора, когда она уже готова
+    public static DiagnosticsView of(MainController controller) {
+        DiagnosticsView view = new DiagnosticsView();
+        view.install(controller);
+        return view;
+    }
+
+    private void install(MainController controller) {
+        setPadding(new Insets(15));
+
+        Label title = new Label("Диагностика");
+        title.getStyleClass().add("header-label");
+
+        Button exportButton = new Button("Выгрузить в файл");
+        exportButton.setOnAction(e -> controller.handleExportDiagnostics());
+        Button resetButton = new Button("Сбросить");
+        resetButton.setOnAction(e -> {
+            Metrics.reset();
+            refresh();
+        });
+        HBox buttonPanel = new HBox(10, exportButton, resetButton);
+
+        getChildren().addAll(title, timingsTable, csvLoadLabel, csvSaveLabel, errorsLabel, errorsList, buttonPanel);
+
+        refreshTimeline = new Timeline(new KeyFrame(REFRESH_INTERVAL, e -> refresh()));
+        refreshTimeline.setCycleCount(Timeline.INDEFINITE);
+        refresh();
+    }
+
+    public void start() {
+        refresh();
+        refreshTimeline.play();
+    }
+
+    public void stop() {
+        refreshTimeline.stop();
+    }
+
+    private void refresh() {
+        timingsTable.refresh();
+        csvLoadLabel.setText(Metrics.CSV_LOAD.getName() + ": " + Metrics.formatTransfer(Metrics.CSV_LOAD));
+        csvSaveLabel.setText(Metrics.CSV_SAVE.getName() + ": " + Metrics.formatTransfer(Metrics.CSV_SAVE));
+        errorsLabel.setText("Ошибок: " + Metrics.getErrorCount());
+        errorsList.getItems().setAll(Metrics.getRecentErrors());
+    }
+
+    private static TableColumn<LatencyHistogram, String> timeColumn(String title, ToLongFunction<LatencyHistogram> value) {
+        TableColumn<LatencyHistogram, String> column = new TableColumn<>(title);
+        column.setCellValueFactory(data -> new ReadOnlyStringWrapper(Metrics.formatNanos(value.applyAsLong(data.getValue()))));
+        return column;
+    }
+}
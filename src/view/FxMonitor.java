@@ -0,0 +1,74 @@
+package view;
+
+import core.Metrics;
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Замеры потока JavaFX. Длительность CSS и раскладки снимается в каждом
+// пульсе: слушатели вызываются, только когда сцену нужно перерисовать.
+// Задержка потока - время, за которое проба, отправляемая раз в 100 мс,
+// доходит до выполнения; зависание обработчика видно по ней сразу.
+// Интервал кадров требует непрерывной анимации, поэтому снимается, только
+// пока открыта вкладка диагностики.
+public class FxMonitor {
+    private static final long PROBE_INTERVAL_MILLIS = 100;
+
+    private final ScheduledExecutorService prober;
+    private final AtomicBoolean probePending = new AtomicBoolean();
+    private final AnimationTimer frameTimer;
+
+    // Используются только в потоке JavaFX
+    private long layoutStart;
+    private long lastFrame;
+
+    public FxMonitor() {
+        prober = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("fx-probe").factory());
+        prober.scheduleAtFixedRate(this::probe, PROBE_INTERVAL_MILLIS, PROBE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+
+        frameTimer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                if (lastFrame != 0) {
+                    Metrics.FX_FRAME.record(now - lastFrame);
+                }
+                lastFrame = now;
+            }
+        };
+    }
+
+    public void install(Scene scene) {
+        scene.addPreLayoutPulseListener(() -> layoutStart = System.nanoTime());
+        scene.addPostLayoutPulseListener(() -> Metrics.FX_PULSE.recordSince(layoutStart));
+    }
+
+    public void startFrameTiming() {
+        lastFrame = 0;
+        frameTimer.start();
+    }
+
+    public void stopFrameTiming() {
+        frameTimer.stop();
+    }
+
+    public void shutdown() {
+        frameTimer.stop();
+        prober.shutdownNow();
+    }
+
+    // Пока предыдущая проба не выполнена, новая не отправляется
+    private void probe() {
+        if (probePending.compareAndSet(false, true)) {
+            long posted = System.nanoTime();
+            Platform.runLater(() -> {
+                Metrics.FX_DELAY.recordSince(posted);
+                probePending.set(false);
+            });
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package view;
+
+import core.ChangeHistory;
+import core.HistoryEvent;
+import javafx.collections.ObservableListBase;
+
+import java.util.List;
+
+// Представляет кольцевой буфер истории как наблюдаемый список для ListView:
+// новые записи добавляются в конец, вытесненные удаляются из начала,
+// без копирования всей истории.
+public class HistoryListModel extends ObservableListBase<HistoryEvent> implements ChangeHistory.Listener {
+    private final ChangeHistory history;
+
+    private HistoryListModel(ChangeHistory history) {
+        this.history = history;
+    }
+
+    // Подписка на историю - после конструктора, когда список уже готов
+    public static HistoryListModel of(ChangeHistory history) {
+        HistoryListModel model = new HistoryListModel(history);
+        history.addListener(model);
+        return model;
+    }
+
+    @Override
+    public HistoryEvent get(int index) {
+        return history.get(index);
+    }
+
+    @Override
+    public int size() {
+        return history.size();
+    }
+
+    @Override
+    public void onAppended(List<HistoryEvent> appended, List<HistoryEvent> evicted) {
+        beginChange();
+        if (!evicted.isEmpty()) {
+            nextRemove(0, evicted);
+        }
+        nextAdd(history.size() - appended.size(), history.size());
+        endChange();
+    }
+
+    @Override
+    public void onCleared(List<HistoryEvent> removed) {
+        if (removed.isEmpty()) {
+            return;
+        }
+        beginChange();
+        nextRemove(0, removed);
+        endChange();
+    }
+}
@@ -1,13 +1,23 @@
 package view;
 
 import controller.MainController;
+import core.HistoryEvent;
+import core.Product;
+import core.StockWatchlist;
+import javafx.beans.binding.Bindings;
+import javafx.collections.ListChangeListener;
+import javafx.collections.transformation.SortedList;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.*;
+import javafx.scene.control.skin.VirtualFlow;
 import javafx.scene.layout.*;
 import model.InventoryModel;
-import model.Product;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 public class MainView extends TabPane {
 
@@ -15,6 +25,7 @@ public class MainView extends TabPane {
     private InventoryModel model;
 
     private TableView<Product> productsTable;
+    private TableView<Product> reorderTable;
     private ComboBox<String> fileComboBox;
     private ComboBox<String> sortComboBox;
     private TextField searchField;
@@ -27,8 +38,23 @@ public class MainView extends TabPane {
     private Label addOperationsLabel;
     private Label updateOperationsLabel;
     private Label deleteOperationsLabel;
+    private Label movementOperationsLabel;
+    private Label totalStockValueLabel;
+    private Label avgStockValueLabel;
+    private Label lowStockLabel;
+    private Label zeroStockLabel;
 
-    private TextArea historyTextArea;
+    private Tab statsTab;
+    private Tab diagnosticsTab;
+    private DiagnosticsView diagnosticsView;
+    private final FxMonitor fxMonitor = new FxMonitor();
+
+    private ListView<HistoryEvent> historyListView;
+
+    private HBox progressPanel;
+    private ProgressBar progressBar;
+    private Label progressLabel;
+    private Button cancelTaskButton;
 
     public Spinner<Integer> getMinQuantitySpinner() { return minQuantitySpinner; }
     public CheckBox getShowZeroQuantityCheckbox() { return showZeroQuantityCheckbox; }
@@ -45,16 +71,33 @@ public class MainView extends TabPane {
         this.setTabClosingPolicy(TabClosingPolicy.UNAVAILABLE);
 
         Tab mainTab = createMainTab();
-        Tab statsTab = createStatisticsTab();
+        statsTab = createStatisticsTab();
+        Tab reorderTab = createReorderTab();
         Tab historyTab = createHistoryTab();
+        diagnosticsTab = createDiagnosticsTab();
 
-        this.getTabs().addAll(mainTab, statsTab, historyTab);
+        this.getTabs().addAll(mainTab, statsTab, reorderTab, historyTab, diagnosticsTab);
 
         this.getStyleClass().add("main-tab-pane");
 
         this.getSelectionModel().selectedItemProperty().addListener((observable, oldTab, newTab) -> {
             if (newTab != null && newTab.getText().equals("История изменений")) {
-                updateHistory();
+                scrollHistoryToEnd();
+            } else if (newTab == statsTab) {
+                controller.updateStatistics();
+            }
+            if (newTab == diagnosticsTab) {
+                diagnosticsView.start();
+                fxMonitor.startFrameTiming();
+            } else if (oldTab == diagnosticsTab) {
+                diagnosticsView.stop();
+                fxMonitor.stopFrameTiming();
+            }
+        });
+
+        this.sceneProperty().addListener((observable, oldScene, newScene) -> {
+            if (newScene != null) {
+                fxMonitor.install(newScene);
             }
         });
     }
@@ -73,7 +116,9 @@ public class MainView extends TabPane {
 
         HBox buttonPanel = createButtonPanel();
 
-        mainContainer.getChildren().addAll(topPanel, productsTable, buttonPanel);
+        progressPanel = createProgressPanel();
+
+        mainContainer.getChildren().addAll(topPanel, productsTable, progressPanel, buttonPanel);
         VBox.setVgrow(productsTable, Priority.ALWAYS);
 
         mainTab.setContent(mainContainer);
@@ -86,22 +131,22 @@ public class MainView extends TabPane {
         topPanel.getStyleClass().add("top-panel");
 
         fileComboBox = new ComboBox<>();
-        fileComboBox.getItems().addAll("Сохранить", "Загрузить");
+        fileComboBox.getItems().addAll("Сохранить", "Загрузить", "Открыть каталог", "Закрыть каталог");
         fileComboBox.setValue("Файл");
         fileComboBox.setPrefWidth(120);
         fileComboBox.getStyleClass().add("combo-box");
 
         sortComboBox = new ComboBox<>();
-        sortComboBox.getItems().addAll("По ID", "По имени", "По количеству", "По цене", "По бренду");
+        sortComboBox.getItems().addAll("По ID", "По имени", "По количеству", "По цене", "По бренду", "По бренду и цене");
         sortComboBox.setValue("По ID");
-        sortComboBox.setPrefWidth(120);
+        sortComboBox.setPrefWidth(160);
         sortComboBox.getStyleClass().add("combo-box");
 
         Label searchLabel = new Label("Поиск:");
         searchLabel.getStyleClass().add("label");
 
         searchField = new TextField();
-        searchField.setPromptText("Введите название товара...");
+        searchField.setPromptText("Название или бренд...");
         searchField.setPrefWidth(200);
         searchField.getStyleClass().add("text-field");
 
@@ -129,73 +174,30 @@ public class MainView extends TabPane {
         TableView<Product> table = new TableView<>();
         table.getStyleClass().add("products-table");
 
-        TableColumn<Product, Integer> idColumn = new TableColumn<>("ID");
-        idColumn.setCellValueFactory(cellData -> cellData.getValue().idProperty().asObject());
-        idColumn.setPrefWidth(50);
-
-        TableColumn<Product, String> nameColumn = new TableColumn<>("Имя");
-        nameColumn.setCellValueFactory(cellData -> cellData.getValue().nameProperty());
-        nameColumn.setPrefWidth(200);
-
-        TableColumn<Product, String> brandColumn = new TableColumn<>("Бренд");
-        brandColumn.setCellValueFactory(cellData -> cellData.getValue().brandProperty());
-        brandColumn.setPrefWidth(150);
-
-        TableColumn<Product, Double> priceColumn = new TableColumn<>("Цена");
-        priceColumn.setCellValueFactory(cellData -> cellData.getValue().priceProperty().asObject());
-        priceColumn.setPrefWidth(100);
-        priceColumn.setCellFactory(column -> new TableCell<Product, Double>() {
-            @Override
-            protected void updateItem(Double price, boolean empty) {
-                super.updateItem(price, empty);
-                if (empty || price == null) {
-                    setText(null);
-                } else {
-                    setText(String.format("%.2f руб.", price));
-                }
-            }
-        });
-
-        TableColumn<Product, Integer> quantityColumn = new TableColumn<>("Количество");
-        quantityColumn.setCellValueFactory(cellData -> cellData.getValue().quantityProperty().asObject());
-        quantityColumn.setPrefWidth(100);
-
-        TableColumn<Product, Integer> avgQuantityColumn = new TableColumn<>("Среднее Количество");
-        avgQuantityColumn.setCellValueFactory(cellData -> cellData.getValue().averageQuantityProperty().asObject());
-        avgQuantityColumn.setPrefWidth(160);
+        // Столбцы без фабрик значений: текст ячейки берется прямо из товара
+        TableColumn<Product, Void> idColumn = textColumn("ID", product -> CellText.ofInt(product.getId()), 50);
+        TableColumn<Product, Void> nameColumn = textColumn("Имя", Product::getName, 200);
+        TableColumn<Product, Void> brandColumn = textColumn("Бренд", Product::getBrand, 150);
+        TableColumn<Product, Void> priceColumn = textColumn("Цена", product -> CellText.ofPrice(product.getPrice()), 100);
+        TableColumn<Product, Void> quantityColumn = textColumn("Количество",
+                product -> CellText.ofInt(product.getQuantity()), 100);
+        TableColumn<Product, Void> avgQuantityColumn = textColumn("Среднее Количество",
+                product -> CellText.ofInt(product.getAverageQuantity()), 160);
 
         table.getColumns().addAll(idColumn, nameColumn, brandColumn, priceColumn, quantityColumn, avgQuantityColumn);
 
-        table.setRowFactory(tv -> new TableRow<Product>() {
-            @Override
-            protected void updateItem(Product product, boolean empty) {
-                super.updateItem(product, empty);
-                if (empty || product == null) {
-                    setStyle("");
-                } else {
-                    applyRowColorStyle(product);
-                }
-            }
-
-            private void applyRowColorStyle(Product product) {
-                int quantity = product.getQuantity();
-                int avgQuantity = product.getAverageQuantity();
-
-                if (quantity == 0) {
-                    setStyle("-fx-background-color: #d3d3d3;");
-                } else if (quantity < 0.5 * avgQuantity) {
-                    setStyle("-fx-background-color: #ffcccc;");
-                } else if (quantity <= 1.5 * avgQuantity) {
-                    setStyle("-fx-background-color: #ffffcc;");
-                } else {
-                    setStyle("-fx-background-color: #ccffcc;");
-                }
-            }
-        });
+        table.setRowFactory(tv -> new ProductTableRow());
 
         return table;
     }
 
+    private static TableColumn<Product, Void> textColumn(String title, Function<Product, String> text, double width) {
+        TableColumn<Product, Void> column = new TableColumn<>(title);
+        column.setCellFactory(c -> new ProductCell(text));
+        column.setPrefWidth(width);
+        return column;
+    }
+
     private HBox createButtonPanel() {
         HBox buttonPanel = new HBox(15);
         buttonPanel.setAlignment(Pos.CENTER);
@@ -222,9 +224,50 @@ public class MainView extends TabPane {
         return buttonPanel;
     }
 
+    private HBox createProgressPanel() {
+        HBox panel = new HBox(15);
+        panel.setAlignment(Pos.CENTER_LEFT);
+        panel.getStyleClass().add("progress-panel");
+
+        progressBar = new ProgressBar(0);
+        progressBar.setPrefWidth(300);
+
+        progressLabel = new Label();
+        progressLabel.getStyleClass().add("label");
+
+        cancelTaskButton = new Button("Отмена");
+        cancelTaskButton.getStyleClass().add("button");
+        cancelTaskButton.getStyleClass().add("cancel-button");
+
+        panel.getChildren().addAll(progressBar, progressLabel, cancelTaskButton);
+        panel.setVisible(false);
+        panel.setManaged(false);
+        return panel;
+    }
+
+    public void showProgress(Task<?> task) {
+        progressBar.progressProperty().bind(task.progressProperty());
+        progressLabel.textProperty().bind(task.messageProperty());
+        cancelTaskButton.setOnAction(e -> task.cancel());
+        fileComboBox.setDisable(true);
+
+        progressPanel.setVisible(true);
+        progressPanel.setManaged(true);
+    }
+
+    public void hideProgress() {
+        progressBar.progressProperty().unbind();
+        progressLabel.textProperty().unbind();
+        cancelTaskButton.setOnAction(null);
+        fileComboBox.setDisable(false);
+
+        progressPanel.setVisible(false);
+        progressPanel.setManaged(false);
+    }
+
     private Tab createStatisticsTab() {
-        Tab statsTab = new Tab("Статистика");
-        statsTab.setClosable(false);
+        Tab tab = new Tab("Статистика");
+        tab.setClosable(false);
 
         VBox statsContainer = new VBox(15);
         statsContainer.setPadding(new Insets(20));
@@ -244,14 +287,24 @@ public class MainView extends TabPane {
         addOperationsLabel = new Label("Добавлений: 0");
         updateOperationsLabel = new Label("Изменений: 0");
         deleteOperationsLabel = new Label("Удалений: 0");
+        movementOperationsLabel = new Label("Движений: 0");
+
+        operationsStatsPanel.getChildren().addAll(addOperationsLabel, updateOperationsLabel, deleteOperationsLabel,
+                movementOperationsLabel);
 
-        operationsStatsPanel.getChildren().addAll(addOperationsLabel, updateOperationsLabel, deleteOperationsLabel);
+        VBox stockStatsPanel = createStatsPanel("Запасы:");
+        totalStockValueLabel = new Label("Стоимость запасов: 0.00 руб.");
+        avgStockValueLabel = new Label("Средняя стоимость запаса товара: 0.00 руб.");
+        lowStockLabel = new Label("Заканчивается: 0");
+        zeroStockLabel = new Label("Нет в наличии: 0");
 
+        stockStatsPanel.getChildren().addAll(totalStockValueLabel, avgStockValueLabel, lowStockLabel, zeroStockLabel);
 
-        statsContainer.getChildren().addAll(title, generalStatsPanel, operationsStatsPanel);
 
-        statsTab.setContent(statsContainer);
-        return statsTab;
+        statsContainer.getChildren().addAll(title, generalStatsPanel, operationsStatsPanel, stockStatsPanel);
+
+        tab.setContent(statsContainer);
+        return tab;
     }
 
     private VBox createStatsPanel(String title) {
@@ -266,6 +319,46 @@ public class MainView extends TabPane {
         return panel;
     }
 
+    // Товары с нулевым или низким остатком. Список ведет модель по мере
+    // изменений, вкладка только сортирует его: сначала отсутствующие, затем
+    // по размеру заказа
+    private Tab createReorderTab() {
+        Tab tab = new Tab("К заказу");
+        tab.setClosable(false);
+
+        VBox reorderContainer = new VBox(10);
+        reorderContainer.setPadding(new Insets(15));
+
+        Label title = new Label("Товары к заказу");
+        title.getStyleClass().add("header-label");
+
+        SortedList<Product> reorderProducts = new SortedList<>(model.getReorderProducts(),
+                Comparator.comparing(Product::getStockLevel)
+                        .thenComparing(Comparator.comparingInt(StockWatchlist::reorderQuantity).reversed())
+                        .thenComparingInt(Product::getId));
+
+        Label countLabel = new Label();
+        countLabel.textProperty().bind(Bindings.size(reorderProducts).asString("Товаров к заказу: %d"));
+
+        reorderTable = new TableView<>(reorderProducts);
+        reorderTable.getStyleClass().add("products-table");
+        reorderTable.getColumns().addAll(List.of(
+                textColumn("ID", product -> CellText.ofInt(product.getId()), 50),
+                textColumn("Имя", Product::getName, 200),
+                textColumn("Бренд", Product::getBrand, 150),
+                textColumn("Количество", product -> CellText.ofInt(product.getQuantity()), 100),
+                textColumn("Среднее Количество", product -> CellText.ofInt(product.getAverageQuantity()), 160),
+                textColumn("Заказать", product -> CellText.ofInt(StockWatchlist.reorderQuantity(product)), 100)));
+        reorderTable.setRowFactory(tv -> new ProductTableRow());
+        refreshRowsOnUpdate(reorderTable);
+        VBox.setVgrow(reorderTable, Priority.ALWAYS);
+
+        reorderContainer.getChildren().addAll(title, countLabel, reorderTable);
+
+        tab.setContent(reorderContainer);
+        return tab;
+    }
+
     private Tab createHistoryTab() {
         Tab historyTab = new Tab("История изменений");
         historyTab.setClosable(false);
@@ -276,17 +369,33 @@ public class MainView extends TabPane {
         Label title = new Label("История изменений товаров");
         title.getStyleClass().add("header-label");
 
-        historyTextArea = new TextArea();
-        historyTextArea.setEditable(false);
-        historyTextArea.getStyleClass().add("history-text-area");
-        VBox.setVgrow(historyTextArea, Priority.ALWAYS);
+        // ListView создает ячейки только для видимых строк
+        historyListView = new ListView<>(HistoryListModel.of(model.getHistory()));
+        historyListView.getStyleClass().add("history-list");
+        historyListView.setCellFactory(list -> new ListCell<HistoryEvent>() {
+            @Override
+            protected void updateItem(HistoryEvent event, boolean empty) {
+                super.updateItem(event, empty);
+                setText(empty || event == null ? null : event.format());
+            }
+        });
+        VBox.setVgrow(historyListView, Priority.ALWAYS);
 
-        historyContainer.getChildren().addAll(title, historyTextArea);
+        historyContainer.getChildren().addAll(title, historyListView);
 
         historyTab.setContent(historyContainer);
         return historyTab;
     }
 
+    private Tab createDiagnosticsTab() {
+        Tab tab = new Tab("Диагностика");
+        tab.setClosable(false);
+
+        diagnosticsView = DiagnosticsView.of(controller);
+        tab.setContent(diagnosticsView);
+        return tab;
+    }
+
     private void setupEventHandlers() {
         productsTable.setOnMouseClicked(event -> {
             if (event.getClickCount() == 2 && !productsTable.getSelectionModel().isEmpty()) {
@@ -312,10 +421,51 @@ public class MainView extends TabPane {
         });
 
         fileComboBox.setOnAction(e -> controller.handleFileOperation(fileComboBox.getValue()));
+
+        refreshRowsOnUpdate(productsTable);
+    }
+
+    // Подписывает таблицу на изменения товаров на месте в том списке, который
+    // она сейчас показывает: контроллер подменяет список (склад или каталог)
+    private static void refreshRowsOnUpdate(TableView<Product> table) {
+        ListChangeListener<Product> listener = change -> refreshUpdatedRows(table, change);
+        if (table.getItems() != null) {
+            table.getItems().addListener(listener);
+        }
+        table.itemsProperty().addListener((obs, oldItems, newItems) -> {
+            if (oldItems != null) {
+                oldItems.removeListener(listener);
+            }
+            if (newItems != null) {
+                newItems.addListener(listener);
+            }
+        });
+    }
+
+    // TableView перерисовывает строку, только когда у нее меняется товар или
+    // позиция. Если товар изменился на месте, видимые строки обновляются явно.
+    private static void refreshUpdatedRows(TableView<Product> table, ListChangeListener.Change<? extends Product> change) {
+        VirtualFlow<?> flow = (VirtualFlow<?>) table.lookup(".virtual-flow");
+        if (flow == null || flow.getFirstVisibleCell() == null) {
+            return;
+        }
+        int first = flow.getFirstVisibleCell().getIndex();
+        int last = flow.getLastVisibleCell().getIndex();
+        while (change.next()) {
+            if (!change.wasUpdated()) {
+                continue;
+            }
+            int to = Math.min(change.getTo(), last + 1);
+            for (int i = Math.max(change.getFrom(), first); i < to; i++) {
+                if (flow.getVisibleCell(i) instanceof ProductTableRow row) {
+                    row.refresh();
+                }
+            }
+        }
     }
 
     public TableView<Product> getProductsTable() { return productsTable; }
-    public TextArea getHistoryTextArea() { return historyTextArea; }
+    public ListView<HistoryEvent> getHistoryListView() { return historyListView; }
 
     public void updateStatistics(Map<String, Object> stats) {
         totalProductsLabel.setText("Всего товаров: " + stats.get("totalProducts"));
@@ -324,14 +474,27 @@ public class MainView extends TabPane {
         addOperationsLabel.setText("Добавлений: " + stats.get("addOperations"));
         updateOperationsLabel.setText("Изменений: " + stats.get("updateOperations"));
         deleteOperationsLabel.setText("Удалений: " + stats.get("deleteOperations"));
+        movementOperationsLabel.setText("Движений: " + stats.get("movementOperations"));
+        totalStockValueLabel.setText("Стоимость запасов: " + stats.get("totalStockValue") + " руб.");
+        avgStockValueLabel.setText("Средняя стоимость запаса товара: " + stats.get("avgStockValue") + " руб.");
+        lowStockLabel.setText("Заканчивается: " + stats.get("lowStockCount"));
+        zeroStockLabel.setText("Нет в наличии: " + stats.get("zeroStockCount"));
+    }
+
+    public boolean isStatisticsVisible() {
+        return statsTab.isSelected();
     }
 
-    public void updateHistory() {
-        historyTextArea.setText(model.getChangeHistory());
+    public void scrollHistoryToEnd() {
+        int size = historyListView.getItems().size();
+        if (size > 0) {
+            historyListView.scrollTo(size - 1);
+        }
     }
 
-    public void updateHistoryString(String history) {
-        historyTextArea.setText(history);
+    public void shutdown() {
+        diagnosticsView.stop();
+        fxMonitor.shutdown();
     }
 
     public void resetFileComboBox() {
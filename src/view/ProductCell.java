@@ -0,0 +1,44 @@
+package view;
+
+import core.Product;
+import javafx.scene.control.TableCell;
+import javafx.scene.control.TableRow;
+import model.PagedProductList;
+
+import java.util.function.Function;
+
+// Ячейка таблицы товаров, которая берет текст прямо из товара строки.
+// У столбца нет фабрики значений, поэтому TableView не создает для каждой
+// ячейки CellDataFeatures, обертку значения и слушателя на ней. Значение
+// ячейки всегда null, и об изменении товара на том же месте ячейка узнает
+// сама, сравнивая показанный текст с текущим.
+public class ProductCell extends TableCell<Product, Void> {
+    private final Function<Product, String> text;
+
+    public ProductCell(Function<Product, String> text) {
+        this.text = text;
+    }
+
+    @Override
+    protected boolean isItemChanged(Void oldItem, Void newItem) {
+        Product product = getProduct();
+        return product != null && !textOf(product).equals(getText());
+    }
+
+    @Override
+    protected void updateItem(Void item, boolean empty) {
+        super.updateItem(item, empty);
+        Product product = empty ? null : getProduct();
+        setText(product == null ? null : textOf(product));
+    }
+
+    // Строка каталога, которая еще читается, показывается пустой
+    private String textOf(Product product) {
+        return product == PagedProductList.LOADING ? "" : text.apply(product);
+    }
+
+    private Product getProduct() {
+        TableRow<Product> row = getTableRow();
+        return row == null ? null : row.getItem();
+    }
+}
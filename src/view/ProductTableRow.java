@@ -0,0 +1,60 @@
+package view;
+
+import core.Product;
+import core.StockLevel;
+import javafx.css.PseudoClass;
+import javafx.scene.Node;
+import javafx.scene.control.TableRow;
+import model.PagedProductList;
+
+// Строка таблицы товаров. Уровень запаса отмечается псевдоклассом, а цвет
+// задается в styles.css: строка не разбирает встроенный стиль при каждой
+// перерисовке, а правила выделения из таблицы стилей остаются в силе.
+public class ProductTableRow extends TableRow<Product> {
+    private static final PseudoClass[] LEVEL_CLASSES = {
+            PseudoClass.getPseudoClass("stock-zero"),
+            PseudoClass.getPseudoClass("stock-low"),
+            PseudoClass.getPseudoClass("stock-normal"),
+            PseudoClass.getPseudoClass("stock-high")
+    };
+
+    private StockLevel level;
+
+    @Override
+    protected void updateItem(Product product, boolean empty) {
+        super.updateItem(product, empty);
+        setLevel(levelOf(product, empty));
+    }
+
+    // Товар строки изменился на месте или вместо PagedProductList.LOADING
+    // прочитан настоящий: строка заново берет товар из списка, уровень запаса
+    // и ячейки пересчитываются (ProductCell сама сравнит свой текст с товаром)
+    void refresh() {
+        updateIndex(getIndex());
+        setLevel(levelOf(getItem(), isEmpty()));
+        for (Node child : getChildrenUnmodifiable()) {
+            if (child instanceof ProductCell cell) {
+                cell.updateIndex(getIndex());
+            }
+        }
+    }
+
+    private static StockLevel levelOf(Product product, boolean empty) {
+        return empty || product == null || product == PagedProductList.LOADING ? null : product.getStockLevel();
+    }
+
+    // Псевдоклассы переключаются только при смене уровня: иначе CSS строки
+    // пересчитывался бы на каждом кадре прокрутки
+    private void setLevel(StockLevel newLevel) {
+        if (newLevel == level) {
+            return;
+        }
+        if (level != null) {
+            pseudoClassStateChanged(LEVEL_CLASSES[level.ordinal()], false);
+        }
+        if (newLevel != null) {
+            pseudoClassStateChanged(LEVEL_CLASSES[newLevel.ordinal()], true);
+        }
+        level = newLevel;
+    }
+}